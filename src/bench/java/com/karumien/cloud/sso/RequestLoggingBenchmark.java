@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpSession;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.karumien.cloud.sso.internal.CallCounter;
+import com.karumien.cloud.sso.internal.RequestLogRecord;
+
+/**
+ * Request logging on request thread per HTTP request (appender excluded): previous MDC based interceptor
+ * (<code>mdc</code>) against reused {@link RequestLogRecord} of {@link LoggingRequestInterceptor} (<code>record</code>).
+ * <p>
+ * Run by <code>mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="RequestLogging -prof gc"</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestLoggingBenchmark {
+
+    private static final String[] HEADERS = { "x-locale", "x-real-ip", "x-request-id", "x-forwarded-for",
+        "x-forwarded-for", "x-original-forwarded-for", "x-trackingid", "user-agent" };
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setup() {
+        request = new MockHttpServletRequest("GET", "/accounts/1000/identities");
+        request.setQueryString("page=0&size=20");
+        request.setContentType("application/json");
+        request.setCharacterEncoding("UTF-8");
+        request.addHeader("x-locale", "cs");
+        request.addHeader("x-real-ip", "10.0.0.1");
+        request.addHeader("x-request-id", "8d2c1f0e-4b7a-4f3e-9c1d-2a6b5e7f9a10");
+        request.addHeader("x-forwarded-for", "10.0.0.1, 10.0.0.2");
+        request.addHeader("user-agent", "Mozilla/5.0 (X11; Linux x86_64)");
+        response = new MockHttpServletResponse();
+    }
+
+    /**
+     * Previous interceptor: request/response wrappers and all fields put to MDC one by one.
+     */
+    @Benchmark
+    public void mdc(Blackhole blackhole) {
+
+        ContentCachingRequestWrapper wrapper = new ContentCachingRequestWrapper(request);
+        wrapper.getParameterMap();
+
+        MDC.put("env", "dev");
+        MDC.put("method", wrapper.getMethod());
+        MDC.put("uri", wrapper.getRequestURI());
+        MDC.put("protocol", wrapper.getProtocol());
+        MDC.put("content_type", wrapper.getContentType());
+        MDC.put("encoding", wrapper.getCharacterEncoding());
+        if (wrapper.getQueryString() != null) {
+            MDC.put("query", wrapper.getQueryString());
+        }
+        String client = wrapper.getRemoteAddr();
+        if (StringUtils.hasLength(client)) {
+            MDC.put("client", client);
+        }
+        HttpSession session = wrapper.getSession(false);
+        if (session != null) {
+            MDC.put("session", session.getId());
+        }
+        for (String header : HEADERS) {
+            String value = wrapper.getHeader(header);
+            if (value != null) {
+                MDC.put(header, value);
+            }
+        }
+        long start = System.currentTimeMillis();
+
+        ContentCachingResponseWrapper wrappedResponse = new ContentCachingResponseWrapper(response);
+        MDC.put("status", "" + response.getStatus());
+        MDC.put("duration_ms", "" + (System.currentTimeMillis() - start));
+        blackhole.consume(wrappedResponse);
+        blackhole.consume(StringUtils.endsWithIgnoreCase(MDC.get("uri"), "/publicKey"));
+        blackhole.consume(MDC.getCopyOfContextMap());
+        MDC.clear();
+    }
+
+    /**
+     * Current interceptor: reused record, correlation fields and result in MDC, other fields in marker.
+     */
+    @Benchmark
+    public void record(Blackhole blackhole) {
+
+        RequestLogRecord.current().capture(request, "dev").putCorrelation();
+        CallCounter.start();
+
+        RequestLogRecord record = RequestLogRecord.current();
+        CallCounter counter = CallCounter.current();
+        record.complete(response, counter).putResult();
+        CallCounter.stop();
+
+        blackhole.consume(StringUtils.endsWithIgnoreCase(record.getUri(), "/publicKey"));
+        blackhole.consume(record.toMarker());
+        blackhole.consume(MDC.getCopyOfContextMap());
+        record.clear();
+        MDC.clear();
+    }
+}
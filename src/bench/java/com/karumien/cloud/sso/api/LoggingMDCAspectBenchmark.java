@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.CodeSignature;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.MDC;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import com.karumien.cloud.sso.LoggingMDCAspect;
+import com.karumien.cloud.sso.LoggingRequestInterceptor;
+import com.karumien.cloud.sso.internal.RequestLogRecord;
+
+/**
+ * Endpoint advice of {@link LoggingMDCAspect} per call of proxied endpoint: previous implementation (<code>legacy</code>,
+ * signature reflection and annotation lookup per call, whole stack trace printed) against current one (metadata cached
+ * per method, truncated stack trace printed when request is logged). Endpoint is in package <code>api</code> to match
+ * pointcut.
+ * <p>
+ * Run by <code>mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="LoggingMDCAspect -prof gc"</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoggingMDCAspectBenchmark {
+
+    @Param({ "legacy", "current" })
+    private String aspect;
+
+    private BenchmarkEndpoint endpoint;
+
+    @Setup
+    public void setup() {
+        AspectJProxyFactory factory = new AspectJProxyFactory(new BenchmarkEndpoint());
+        factory.setProxyTargetClass(true);
+        factory.addAspect("legacy".equals(aspect) ? new LegacyLoggingMDCAspect() : new LoggingMDCAspect());
+        endpoint = factory.getProxy();
+    }
+
+    @Benchmark
+    public String around() {
+        String result = endpoint.getModule("1000", "ROLE_MODULE");
+        MDC.clear();
+        return result;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String throwing() {
+        try {
+            return endpoint.deleteModule("1000", "ROLE_MODULE");
+        } catch (IllegalStateException e) {
+            if (!"legacy".equals(aspect)) {
+                RequestLogRecord.current().putException(1000).clear();
+            }
+            String exception = MDC.get("exception");
+            MDC.clear();
+            return exception;
+        }
+    }
+
+    /**
+     * Endpoint proxied by aspect.
+     */
+    public static class BenchmarkEndpoint {
+
+        @RequestMapping(path = "/accounts/{accountNumber}/modules/{moduleId}")
+        public String getModule(String accountNumber, String moduleId) {
+            return moduleId;
+        }
+
+        @RequestMapping(path = "/accounts/{accountNumber}/modules/{moduleId}")
+        public String deleteModule(String accountNumber, String moduleId) {
+            throw new IllegalStateException("Module " + moduleId + " of account " + accountNumber + " not found");
+        }
+    }
+
+    /**
+     * Previous implementation of {@link LoggingMDCAspect}, kept as benchmark baseline.
+     */
+    @Aspect
+    public static class LegacyLoggingMDCAspect {
+
+        private static final List<String> MDC_CONTEXT = Arrays.asList("accountNumber", "contactNumber", "moduleId", "nav4Id");
+
+        @Around("within(com.karumien.cloud.sso.api.*)")
+        public Object prepareMDCContext(ProceedingJoinPoint joinPoint) throws Throwable {
+
+            final Signature signatureClazz = joinPoint.getSignature();
+            MDC.put("class", signatureClazz.getDeclaringType().getSimpleName());
+
+            CodeSignature codeSignature = (CodeSignature) joinPoint.getSignature();
+            for (int i = 0; i < codeSignature.getParameterNames().length; i++) {
+                String name = codeSignature.getParameterNames()[i];
+                if (MDC_CONTEXT.contains(name) && joinPoint.getArgs()[i] != null) {
+                    MDC.put(name, "" + joinPoint.getArgs()[i]);
+                }
+            }
+
+            final MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+            Method method = signature.getMethod();
+            MDC.put("class_method", method.getName() + "()");
+
+            RequestMapping requestMapping = AnnotationUtils.findAnnotation(method, RequestMapping.class);
+            if (requestMapping != null && requestMapping.path() != null && requestMapping.path().length > 0) {
+                MDC.put("path", requestMapping.path()[0]);
+            }
+
+            return joinPoint.proceed();
+        }
+
+        @AfterThrowing(pointcut = ("within(com.karumien.cloud.sso.api.*)"), throwing = "e")
+        public void endpointAfterThrowing(JoinPoint p, Exception e) throws Exception {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            e.printStackTrace(new PrintStream(baos));
+            MDC.put("exception", LoggingRequestInterceptor.getContentAsString(baos.toByteArray(), 1000, "UTF-8"));
+        }
+    }
+}
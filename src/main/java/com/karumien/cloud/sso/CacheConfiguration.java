@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.i18n.LocaleContextHolder;
+
+import com.hazelcast.cluster.InitialMembershipEvent;
+import com.hazelcast.cluster.InitialMembershipListener;
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.EvictionConfig;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.ListenerConfig;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MaxSizePolicy;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Distributed cache (embedded Hazelcast cluster of all service replicas) with named regions.
+ */
+@Data
+@Slf4j
+@Configuration
+@EnableCaching
+@ConfigurationProperties(prefix = "cache")
+public class CacheConfiguration {
+
+    /** Roles of SelfCare group (translated, key locale) */
+    public static final String ACCOUNT_ROLES = "account-roles";
+
+    /** Master group ID by name */
+    public static final String MASTER_GROUP_ID = "master-group-id";
+
+    /** Account by accountNumber */
+    public static final String ACCOUNTS = "accounts";
+
+    /** Locales used by identities of account, key accountNumber */
+    public static final String ACCOUNT_LOCALES = "account-locales";
+
+    /** Topic of realm role changes (role name) made by any replica */
+    public static final String ROLE_CHANGES = "role-changes";
+
+    /** Name of {@link KeyGenerator} which uses current request locale as key */
+    public static final String LOCALE_KEY_GENERATOR = "localeKeyGenerator";
+
+    private static final String DISCOVERY_MULTICAST = "multicast";
+
+    private static final String DISCOVERY_TCP = "tcp";
+
+    private static final String DISCOVERY_NONE = "none";
+
+    private String clusterName = "ew-sso-api";
+
+    /** Discovery of replicas: tcp (list of members), multicast (not available in most container networks) or none */
+    private String discovery = DISCOVERY_TCP;
+
+    /** Members (host or host:port) for tcp discovery */
+    private List<String> members = new ArrayList<>();
+
+    /** Expected count of replicas, warning is logged while cluster has less members */
+    private int expectedMembers = 1;
+
+    private Region defaults = new Region();
+
+    private Map<String, Region> regions = new HashMap<>();
+
+    /**
+     * Cache region limits.
+     */
+    @Data
+    public static class Region {
+
+        /** Time to live of entry in seconds */
+        private int ttl = 600;
+
+        /** Maximal count of entries per cluster member */
+        private int size = 1000;
+    }
+
+    @Bean
+    public Config hazelcastConfig() {
+
+        Config config = new Config();
+        config.setClusterName(clusterName);
+        config.setProperty("hazelcast.logging.type", "slf4j");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+
+        if (!DISCOVERY_TCP.equalsIgnoreCase(discovery) && !DISCOVERY_MULTICAST.equalsIgnoreCase(discovery) 
+                && !DISCOVERY_NONE.equalsIgnoreCase(discovery)) {
+            throw new IllegalStateException("Unknown cache.discovery " + discovery + ", use tcp, multicast or none");
+        }
+        if (DISCOVERY_TCP.equalsIgnoreCase(discovery) && members.isEmpty()) {
+            throw new IllegalStateException("Members of cluster (cache.members) are required for tcp discovery");
+        }
+
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(DISCOVERY_MULTICAST.equalsIgnoreCase(discovery));
+        join.getTcpIpConfig().setEnabled(DISCOVERY_TCP.equalsIgnoreCase(discovery)).setMembers(members);
+
+        for (String name : new String[] { ACCOUNT_ROLES, MASTER_GROUP_ID, ACCOUNTS, ACCOUNT_LOCALES }) {
+            Region region = regions.getOrDefault(name, defaults);
+            config.addMapConfig(new MapConfig(name)
+                .setTimeToLiveSeconds(region.getTtl())
+                .setEvictionConfig(new EvictionConfig()
+                    .setEvictionPolicy(EvictionPolicy.LRU)
+                    .setMaxSizePolicy(MaxSizePolicy.PER_NODE)
+                    .setSize(region.getSize())));
+        }
+
+        config.addListenerConfig(new ListenerConfig(new ClusterSizeListener(expectedMembers)));
+
+        return config;
+    }
+
+    /**
+     * Warns when cluster has less members than expected replicas: replicas out of cluster don't share cache regions and
+     * don't receive {@link #ROLE_CHANGES} (changes are visible after scheduled reload only).
+     */
+    private static class ClusterSizeListener implements InitialMembershipListener {
+
+        private final int expectedMembers;
+
+        ClusterSizeListener(int expectedMembers) {
+            this.expectedMembers = expectedMembers;
+        }
+
+        @Override
+        public void init(InitialMembershipEvent event) {
+            check(event.getMembers().size());
+        }
+
+        @Override
+        public void memberAdded(MembershipEvent event) {
+            check(event.getMembers().size());
+        }
+
+        @Override
+        public void memberRemoved(MembershipEvent event) {
+            check(event.getMembers().size());
+        }
+
+        private void check(int size) {
+            if (size < expectedMembers) {
+                log.warn("Cache cluster has {} of {} expected members, check cache.discovery and cache.members", size, expectedMembers);
+            } else {
+                log.info("Cache cluster has {} members", size);
+            }
+        }
+    }
+
+    @Bean(name = LOCALE_KEY_GENERATOR)
+    public KeyGenerator localeKeyGenerator() {
+        return (target, method, params) -> method.getName() + ":" + LocaleContextHolder.getLocale().toLanguageTag();
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.karumien.cloud.sso.internal.CallCounter;
+import com.karumien.cloud.sso.internal.CallCountingStatementInspector;
+
+/**
+ * Accounting of outbound calls per HTTP request ({@link CallCounter}), JPA statements are counted by Hibernate
+ * statement inspector, KeyCloak calls by REST client filter.
+ */
+@Configuration
+public class CallCountingConfiguration {
+
+    @Bean
+    public HibernatePropertiesCustomizer callCountingHibernateCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new CallCountingStatementInspector());
+    }
+}
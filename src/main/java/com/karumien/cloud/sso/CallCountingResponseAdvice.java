@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import com.karumien.cloud.sso.internal.CallCounter;
+
+/**
+ * Debug response headers with count of outbound calls of request (<code>calls.headers=true</code>). Headers are added
+ * before body is written, so calls done later (and responses without body) are not included.
+ */
+@ControllerAdvice
+public class CallCountingResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String HEADER_CALLS_KEYCLOAK = "X-Calls-Keycloak";
+    public static final String HEADER_CALLS_TOKEN = "X-Calls-Token";
+    public static final String HEADER_CALLS_JPA = "X-Calls-Jpa";
+
+    @Value("${calls.headers:false}")
+    private boolean headers;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return headers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+            Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request, ServerHttpResponse response) {
+        CallCounter counter = CallCounter.current();
+        if (counter != null) {
+            response.getHeaders().set(HEADER_CALLS_KEYCLOAK, String.valueOf(counter.get(CallCounter.Type.KEYCLOAK)));
+            response.getHeaders().set(HEADER_CALLS_TOKEN, String.valueOf(counter.get(CallCounter.Type.TOKEN)));
+            response.getHeaders().set(HEADER_CALLS_JPA, String.valueOf(counter.get(CallCounter.Type.JPA)));
+        }
+        return body;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.karumien.cloud.sso.internal.Catalog;
+
+/**
+ * Conditional responses of read-mostly catalog endpoints (ETag, Last-Modified, Cache-Control, 304 Not Modified).
+ */
+@Component
+public class CatalogResponses {
+
+    /** Max age of catalog in client cache in seconds, 0 means revalidation on every use */
+    @Value("${catalog.max-age:0}")
+    private long maxAge;
+
+    /**
+     * Response with body of catalog or 304 when client has current version.
+     */
+    public <T> ResponseEntity<T> of(Catalog<T> catalog, String ifNoneMatch) {
+        return of(catalog, ifNoneMatch, false);
+    }
+
+    /**
+     * Response with body of catalog translated by request locale or 304 when client has current version.
+     */
+    public <T> ResponseEntity<T> ofTranslated(Catalog<T> catalog, String ifNoneMatch) {
+        return of(catalog, ifNoneMatch, true);
+    }
+
+    private <T> ResponseEntity<T> of(Catalog<T> catalog, String ifNoneMatch, boolean translated) {
+        boolean notModified = catalog.isNotModified(ifNoneMatch);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+            .eTag(catalog.getEtag())
+            .lastModified(catalog.getLastModified())
+            .cacheControl(maxAge > 0 ? CacheControl.maxAge(maxAge, TimeUnit.SECONDS).mustRevalidate() : CacheControl.noCache());
+        if (translated) {
+            builder.varyBy(HeaderLocaleResolver.HEADER_LOCALE, HttpHeaders.ACCEPT_LANGUAGE);
+        }
+        return notModified ? builder.build() : builder.body(catalog.getBody());
+    }
+}
@@ -38,12 +38,15 @@ import com.karumien.cloud.sso.util.ValidationUtil;
 @Component
 public class HeaderLocaleResolver extends AcceptHeaderLocaleResolver implements WebMvcConfigurer {
 
+    /** Request header with preferred language (before Accept-Language) */
+    public static final String HEADER_LOCALE = "x-locale";
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Locale resolveLocale(HttpServletRequest request) {
-        String headerLang = request.getHeader("x-locale");
+        String headerLang = request.getHeader(HEADER_LOCALE);
         
         if (!StringUtils.hasText(headerLang)) {
             headerLang = request.getLocale() != null ? request.getLocale().getLanguage() : null;
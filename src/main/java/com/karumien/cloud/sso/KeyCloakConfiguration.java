@@ -6,12 +6,19 @@
  */
 package com.karumien.cloud.sso;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.keycloak.admin.client.JacksonProvider;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.karumien.cloud.sso.internal.CallCountingFilter;
+
 /**
  * KeyCloak server instance konfiguration.
  *
@@ -33,9 +40,52 @@ public class KeyCloakConfiguration {
     @Value("${keycloak.client-id}")
     private String CLIENT_ID;
 
+    @Value("${keycloak.connection-pool-size:20}")
+    private int CONNECTION_POOL_SIZE;
+
+    @Value("${keycloak.parallelism:8}")
+    private int PARALLELISM;
+
+    @Value("${onboarding.parallelism:4}")
+    private int ONBOARDING_PARALLELISM;
+
     @Bean
     public Keycloak getKeyCloak() {
         return KeycloakBuilder.builder().serverUrl(ADMIN_SERVER_URL).realm("master")
-                .username(USERNAME).password(PASSWORD).clientId(CLIENT_ID).build();
+                .username(USERNAME).password(PASSWORD).clientId(CLIENT_ID)
+                .resteasyClient(new ResteasyClientBuilder().connectionPoolSize(CONNECTION_POOL_SIZE)
+                    .register(new JacksonProvider(), 100)
+                    .register(new CallCountingFilter()).build())
+                .build();
+    }
+
+    /**
+     * Bounded executor for parallel KeyCloak Admin REST calls (must be lower than REST client connection pool size).
+     * 
+     * @return {@link ExecutorService} with fixed pool
+     */
+    @Bean(name = "keycloakExecutor", destroyMethod = "shutdown")
+    public ExecutorService getKeyCloakExecutor() {
+        return Executors.newFixedThreadPool(PARALLELISM);
+    }
+
+    /**
+     * Bounded executor for onboarding pipeline, every task processes items of one account (own pool, tasks call KeyCloak themselves).
+     * 
+     * @return {@link ExecutorService} with fixed pool
+     */
+    @Bean(name = "onboardingExecutor", destroyMethod = "shutdown")
+    public ExecutorService getOnboardingExecutor() {
+        return Executors.newFixedThreadPool(ONBOARDING_PARALLELISM);
+    }
+
+    /**
+     * Executor for asynchronous onboarding Jobs, one Job at time (records of Job are processed by onboarding executor).
+     * 
+     * @return {@link ExecutorService} with single thread
+     */
+    @Bean(name = "onboardingJobExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService getOnboardingJobExecutor() {
+        return Executors.newSingleThreadExecutor();
     }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.stereotype.Component;
+
+import com.karumien.cloud.sso.internal.MeteredKeycloakResource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Resources obtained from {@link org.keycloak.admin.client.Keycloak} bean (ie. <code>keycloak.realm(realm)</code>)
+ * are replaced by {@link MeteredKeycloakResource} proxies, so every KeyCloak Admin REST call is timed and traced.
+ */
+@Aspect
+@Component
+@ConditionalOnExpression("${keycloak.metrics.enabled:true}")
+public class KeycloakMetricsAspect {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectProvider<Tracer> tracer;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Around("execution(public org.keycloak.admin.client.resource.* org.keycloak.admin.client.Keycloak.*(..))")
+    public Object meterResource(ProceedingJoinPoint joinPoint) throws Throwable {
+        Class type = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+        return MeteredKeycloakResource.wrap(joinPoint.proceed(), type, meterRegistry, tracer.getIfAvailable());
+    }
+}
@@ -13,19 +13,17 @@
  */
 package com.karumien.cloud.sso;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.AfterThrowing;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.reflect.CodeSignature;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.MDC;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
@@ -34,7 +32,7 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.RequestMapping;
 
-import com.ctc.wstx.io.CharsetNames;
+import com.karumien.cloud.sso.internal.RequestLogRecord;
 
 @Aspect
 @Order(1)
@@ -43,32 +41,68 @@ import com.ctc.wstx.io.CharsetNames;
 public class LoggingMDCAspect {
 
   private final static List<String> MDC_CONTEXT = Arrays.asList("accountNumber", "contactNumber", "moduleId", "nav4Id");
-    
+
+  /** Metadata of endpoint methods, resolved on first call of method */
+  private final Map<Method, EndpointMetadata> endpoints = new ConcurrentHashMap<>();
+
   @Around("within(com.karumien.cloud.sso.api.*)")
   public Object prepareMDCContext(ProceedingJoinPoint joinPoint) throws Throwable {
       
-      final Signature signatureClazz = joinPoint.getSignature();
-      MDC.put("class", signatureClazz.getDeclaringType().getSimpleName());
-      
-      CodeSignature codeSignature = (CodeSignature) joinPoint.getSignature();
-      for (int i = 0; i < codeSignature.getParameterNames().length; i++) {
-          String name = codeSignature.getParameterNames()[i];
-          if (MDC_CONTEXT.contains(name) && joinPoint.getArgs()[i] != null) {
-              MDC.put(name, ""+joinPoint.getArgs()[i]);
+      final MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+      EndpointMetadata endpoint = endpoints.computeIfAbsent(signature.getMethod(), m -> new EndpointMetadata(signature));
+
+      MDC.put("class", endpoint.className);
+
+      Object[] args = joinPoint.getArgs();
+      for (int i = 0; i < endpoint.indices.length; i++) {
+          Object arg = args[endpoint.indices[i]];
+          if (arg != null) {
+              MDC.put(endpoint.names[i], arg.toString());
           }
       }
 
-      final MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-      Method method = signature.getMethod();
-      MDC.put("class_method", method.getName() + "()");
-      
-      RequestMapping requestMapping = AnnotationUtils.findAnnotation(method, RequestMapping.class);
-      if (requestMapping != null && requestMapping.path() != null && requestMapping.path().length > 0) {
-          MDC.put("path", requestMapping.path()[0]);
+      MDC.put("class_method", endpoint.methodName);
+      if (endpoint.path != null) {
+          MDC.put("path", endpoint.path);
       }
 
       return joinPoint.proceed();
   }
+
+  /**
+   * Endpoint method metadata: parameters copied to MDC and resolved request mapping path.
+   */
+  private static final class EndpointMetadata {
+
+      private final String className;
+      private final String methodName;
+      private final String path;
+      private final int[] indices;
+      private final String[] names;
+
+      EndpointMetadata(MethodSignature signature) {
+          Method method = signature.getMethod();
+          className = signature.getDeclaringType().getSimpleName();
+          methodName = method.getName() + "()";
+
+          RequestMapping requestMapping = AnnotationUtils.findAnnotation(method, RequestMapping.class);
+          path = requestMapping != null && requestMapping.path().length > 0 ? requestMapping.path()[0] : null;
+
+          String[] parameterNames = signature.getParameterNames();
+          int[] captured = new int[parameterNames == null ? 0 : parameterNames.length];
+          int count = 0;
+          for (int i = 0; i < captured.length; i++) {
+              if (MDC_CONTEXT.contains(parameterNames[i])) {
+                  captured[count++] = i;
+              }
+          }
+          indices = Arrays.copyOf(captured, count);
+          names = new String[count];
+          for (int i = 0; i < count; i++) {
+              names[i] = parameterNames[indices[i]];
+          }
+      }
+  }
   
 //  @Around("@annotation(org.springframework.web.bind.annotation.RequestMapping)")
 //  public Object prepareMDCRequest(ProceedingJoinPoint joinPoint) throws Throwable {
@@ -80,14 +114,8 @@ public class LoggingMDCAspect {
 
    @AfterThrowing(pointcut = ("within(com.karumien.cloud.sso.api.*)"), throwing = "e")
     public void endpointAfterThrowing(JoinPoint p, Exception e) throws Exception {
-       MDC.put("exception", LoggingRequestInterceptor.getContentAsString(getThrowableStackTraceBytes(e), 1000, CharsetNames.CS_UTF8));        
+       RequestLogRecord.current().exception(e);
     }
-   
-   private final static byte[] getThrowableStackTraceBytes(Throwable throwable) {
-       ByteArrayOutputStream baos = new ByteArrayOutputStream();
-       throwable.printStackTrace(new PrintStream(baos));
-       return baos.toByteArray();
-   }
   
 //    @Around("within(com.karumien.cloud.sso.api..*)")
 //    public Object aroundAdvice(ProceedingJoinPoint joinPoint) throws Throwable {
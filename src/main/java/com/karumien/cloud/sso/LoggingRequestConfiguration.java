@@ -7,6 +7,10 @@
 package com.karumien.cloud.sso;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -27,8 +31,19 @@ public class LoggingRequestConfiguration implements WebMvcConfigurer {
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(loggingRequestInterceptor)
-          .addPathPatterns("/users/**", "/accounts/**", "/auth/**", 
-                "/modules/**", "/roles/**", "/locale/**");
+          .addPathPatterns("/users/**", "/accounts/**", "/auth/**", "/identities/**",
+                "/modules/**", "/roles/**", "/locale/**", "/def/**");
+    }
+
+    @Bean
+    @ConditionalOnProperty("logging.request.payload")
+    public FilterRegistrationBean<RequestPayloadCachingFilter> requestPayloadCachingFilter(
+            @Value("${logging.request.max-payload-length:1000}") int maxPayloadLength) {
+        FilterRegistrationBean<RequestPayloadCachingFilter> registration =
+            new FilterRegistrationBean<>(new RequestPayloadCachingFilter(maxPayloadLength));
+        registration.addUrlPatterns("/users/*", "/accounts/*", "/auth/*", "/identities/*",
+            "/modules/*", "/roles/*", "/locale/*", "/def/*");
+        return registration;
     }
     
 }
@@ -7,28 +7,37 @@
 package com.karumien.cloud.sso;
 
 import java.io.UnsupportedEncodingException;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.util.ContentCachingRequestWrapper;
 import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
 
+import com.karumien.cloud.sso.internal.CallCounter;
+import com.karumien.cloud.sso.internal.RequestLogRecord;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 
 /**
  * Base Request/Response logging interceptor.
+ * <p>
+ * Request fields are captured to reused {@link RequestLogRecord} of request thread, correlation fields and result
+ * are put to MDC and other fields logged once as marker <code>integration-call</code>, JSON is encoded by asynchronous
+ * appender (see <code>logback-spring.xml</code>). Stack trace of exception thrown by endpoint is rendered only here,
+ * when request is logged. Payload is logged (credentials masked) only when cached by
+ * {@link RequestPayloadCachingFilter} (<code>logging.request.payload</code>).
  *
  * @author <a href="miroslav.svoboda@karumien.com">Miroslav Svoboda</a>
  * @since 1.0, 25. 9. 2019 22:07:02 
@@ -37,120 +46,93 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class LoggingRequestInterceptor implements HandlerInterceptor {
 
-    protected static final List<String> MDC_HEADERS_CONTEXT = 
-        Arrays.asList("x-locale", "x-real-ip", "x-request-id", "x-forwarded-for", "x-forwarded-for",
-            "x-original-forwarded-for", "x-trackingid", "user-agent");
+    private static final String METRIC_CALLS = "http.server.requests.calls";
+
+    private static final String METRIC_CALLS_EXCEEDED = "http.server.requests.calls.exceeded";
 
-    private ThreadLocal<Long> startTime = new ThreadLocal<>();
-    
     @Value("${spring.application.env:dev}")
     private String env;
+
+    /** Max count of outbound calls per request without warning, 0 disables warning */
+    @Value("${calls.threshold:50}")
+    private int callsThreshold;
+
+    @Value("${logging.request.max-payload-length:1000}")
+    private int maxPayloadLength;
+
+    @Value("${logging.request.max-exception-length:1000}")
+    private int maxExceptionLength;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
     
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-                
-        ContentCachingRequestWrapper requestCacheWrapperObject = new ContentCachingRequestWrapper(request);
-        requestCacheWrapperObject.getParameterMap();
-        
-        MDC.put("env", env);
-        MDC.put("method", requestCacheWrapperObject.getMethod());
-        MDC.put("uri", requestCacheWrapperObject.getRequestURI());
-        MDC.put("protocol", requestCacheWrapperObject.getProtocol());
-        MDC.put("content_type", requestCacheWrapperObject.getContentType());
-        MDC.put("encoding", requestCacheWrapperObject.getCharacterEncoding());
-        
-        if (requestCacheWrapperObject.getAuthType() != null) {
-            MDC.put("authType", requestCacheWrapperObject.getAuthType());
-        }
-        if (requestCacheWrapperObject.getUserPrincipal() != null) {
-            MDC.put("principal", requestCacheWrapperObject.getUserPrincipal().getName());
-        }
-        String queryString = requestCacheWrapperObject.getQueryString();
-        if (queryString != null) {
-            MDC.put("query", queryString);
-        }
+        RequestLogRecord.current().capture(request, env).putCorrelation();
+        CallCounter.start();
+        return true;
+    }
 
-        String client = requestCacheWrapperObject.getRemoteAddr();
-        if (StringUtils.hasLength(client)) {
-            MDC.put("client", client);
-        }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
 
-        HttpSession session = requestCacheWrapperObject.getSession(false);
-        if (session != null) {
-            MDC.put("session", session.getId());
+        RequestLogRecord record = RequestLogRecord.current();
+        CallCounter counter = CallCounter.current();
+        record.complete(response, counter).putResult();
+        accountCalls(request, counter);
+        CallCounter.stop();
+
+        String uri = record.getUri();
+        if (!StringUtils.endsWithIgnoreCase(uri, "/publicKey") && !StringUtils.endsWithIgnoreCase(uri, "/jwks")) {
+            payload(request, response, record);
+            record.putException(maxExceptionLength);
+            log.info(record.toMarker(), "integration-call");
         }
-        String user = requestCacheWrapperObject.getRemoteUser();
-        if (user != null) {
-            MDC.put("user", user);
+        record.clear();
+        MDC.clear();
+    }
+
+    private void payload(HttpServletRequest request, HttpServletResponse response, RequestLogRecord record) {
+
+        ContentCachingRequestWrapper cachedRequest = WebUtils.getNativeRequest(request, ContentCachingRequestWrapper.class);
+        ContentCachingResponseWrapper cachedResponse = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        if (cachedRequest == null || cachedResponse == null) {
+            return;
         }
 
-        //MDC.put("headers_all", toJson(new ServletServerHttpRequest(requestCacheWrapperObject).getHeaders()));
-        MDC_HEADERS_CONTEXT.stream().forEach(h -> scripted(h, requestCacheWrapperObject));
-       
-        //if (requestCacheWrapperObject.getContentAsByteArray().length > 0) {
-         //   MDC.put("request", getContentAsString(requestCacheWrapperObject.getContentAsByteArray(), this.maxPayloadLength, 
-           //   requestCacheWrapperObject.getCharacterEncoding()));
-        //}
-        
-        startTime.set(System.currentTimeMillis());        
-        return true;
+        record.payload(
+            getContentAsString(cachedRequest.getContentAsByteArray(), maxPayloadLength, cachedRequest.getCharacterEncoding()),
+            getContentAsString(cachedResponse.getContentAsByteArray(), maxPayloadLength, cachedResponse.getCharacterEncoding()));
     }
 
-    protected void scripted(String header, HttpServletRequest requestCacheWrapperObject) {
-        
-        String value = requestCacheWrapperObject.getHeader(header);
-        if (value != null) {
-            MDC.put(header, value);
+    private void accountCalls(HttpServletRequest request, CallCounter counter) {
+
+        if (counter == null) {
+            return;
         }
-    }
 
-    protected String toJson(HttpHeaders headers) {
-
-        StringBuilder sb = new StringBuilder();
-        for (String key : headers.keySet()) {
-            
-            Optional<String> val = headers.get(key).stream().findFirst();
-            if (!val.isPresent()) {
-                continue;
-            }
-            
-            if (sb.length()==0) {
-                sb.append(" {");
-            } else {
-                sb.append(", ");
-            }
-            
-            sb.append("\"").append(key).append("\" : ");
-            sb.append("\"").append(val.get()).append("\"");
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+
+        for (CallCounter.Type type : CallCounter.Type.values()) {
+            String name = type.name().toLowerCase();
+            DistributionSummary.builder(METRIC_CALLS)
+                .description("Outbound calls (KeyCloak, token endpoint, JPA) per request")
+                .tags("uri", uri, "method", request.getMethod(), "type", name)
+                .register(meterRegistry)
+                .record(counter.get(type));
         }
-        
-        return sb.append(" }").toString();
-    }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
-        
-        ContentCachingResponseWrapper wrappedResponse = new ContentCachingResponseWrapper(response);
-        
-        long duration = System.currentTimeMillis()-startTime.get();
-        MDC.put("status", ""+response.getStatus());
-        MDC.put("duration_ms", ""+duration);
-        
-        //MDC.put("response", getContentAsString(wrappedResponse.getContentAsByteArray(), this.maxPayloadLength, response.getCharacterEncoding()));
-       
-        startTime.remove();
-        wrappedResponse.copyBodyToResponse();  
-        
-        if (!StringUtils.endsWithIgnoreCase(MDC.get("uri"), "/publicKey")) {
-            log.info("integration-call");
+        if (callsThreshold > 0 && counter.getTotal() > callsThreshold) {
+            meterRegistry.counter(METRIC_CALLS_EXCEEDED, "uri", uri, "method", request.getMethod()).increment();
+            log.warn("Request {} {} made {} outbound calls (threshold {})", request.getMethod(), uri, counter.getTotal(), callsThreshold);
         }
-        MDC.clear();
     }
 
     public static String getContentAsString(byte[] buf, int maxPayloadLength, String charsetName) {
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+/**
+ * Caches request and response payload for {@link LoggingRequestInterceptor}, registered only when payload logging is
+ * enabled (<code>logging.request.payload</code>).
+ */
+public class RequestPayloadCachingFilter extends OncePerRequestFilter {
+
+    private final int maxPayloadLength;
+
+    public RequestPayloadCachingFilter(int maxPayloadLength) {
+        this.maxPayloadLength = maxPayloadLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        ContentCachingResponseWrapper cachedResponse = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(new ContentCachingRequestWrapper(request, maxPayloadLength), cachedResponse);
+        } finally {
+            cachedResponse.copyBodyToResponse();
+        }
+    }
+}
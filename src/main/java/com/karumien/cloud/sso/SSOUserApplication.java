@@ -24,6 +24,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -40,6 +41,7 @@ import lombok.extern.slf4j.Slf4j;
 // @EnableFeignClients
 @EnableAspectJAutoProxy
 @EnableAutoConfiguration
+@EnableScheduling
 @Slf4j
 public class SSOUserApplication {
 
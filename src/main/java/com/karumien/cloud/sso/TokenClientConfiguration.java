@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient43Engine;
+import org.keycloak.admin.client.JacksonProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import com.karumien.cloud.sso.internal.AdvancedTokenManager;
+import com.karumien.cloud.sso.internal.CallCountingFilter;
+
+/**
+ * Shared keep-alive HTTP client for KeyCloak token endpoint (/protocol/openid-connect/token) used by all login grant types.
+ */
+@Configuration
+public class TokenClientConfiguration {
+
+    @Value("${keycloak.auth-server-url}")
+    private String serverUrl;
+
+    @Value("${keycloak.token-client.pool-size:50}")
+    private int poolSize;
+
+    @Value("${keycloak.token-client.connect-timeout:2000}")
+    private int connectTimeout;
+
+    @Value("${keycloak.token-client.read-timeout:10000}")
+    private int readTimeout;
+
+    @Value("${keycloak.token-client.connection-request-timeout:2000}")
+    private int connectionRequestTimeout;
+
+    @Value("${keycloak.token-client.idle-timeout:30000}")
+    private long idleTimeout;
+
+    @Value("${keycloak.token-client.time-to-live:300000}")
+    private long timeToLive;
+
+    @Bean(destroyMethod = "shutdown")
+    public PoolingHttpClientConnectionManager tokenConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(timeToLive, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(poolSize);
+        // only one route - KeyCloak server
+        connectionManager.setDefaultMaxPerRoute(poolSize);
+        connectionManager.setValidateAfterInactivity(2000);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient tokenHttpClient(PoolingHttpClientConnectionManager tokenConnectionManager) {
+        return HttpClientBuilder.create()
+            .setConnectionManager(tokenConnectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .setConnectionRequestTimeout(connectionRequestTimeout)
+                .build())
+            .evictExpiredConnections()
+            .evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS)
+            .disableCookieManagement()
+            .build();
+    }
+
+    @Bean(name = "tokenClient", destroyMethod = "close")
+    public ResteasyClient tokenClient(CloseableHttpClient tokenHttpClient) {
+        return new ResteasyClientBuilder()
+            .httpEngine(new ApacheHttpClient43Engine(tokenHttpClient))
+            .register(new JacksonProvider(), 100)
+            .register(new CallCountingFilter())
+            .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public AdvancedTokenManager advancedTokenManager(@Qualifier("tokenClient") ResteasyClient tokenClient, MeterRegistry meterRegistry) {
+        AdvancedTokenManager tokenManager = new AdvancedTokenManager(tokenClient, meterRegistry);
+        tokenManager.getTokenService(serverUrl);
+        return tokenManager;
+    }
+
+    @Bean
+    public MeterBinder tokenConnectionPoolMetrics(PoolingHttpClientConnectionManager tokenConnectionManager) {
+        return registry -> {
+            Gauge.builder("keycloak.token.pool.leased", tokenConnectionManager, cm -> cm.getTotalStats().getLeased())
+                .description("Token endpoint connections in use").register(registry);
+            Gauge.builder("keycloak.token.pool.available", tokenConnectionManager, cm -> cm.getTotalStats().getAvailable())
+                .description("Idle token endpoint connections").register(registry);
+            Gauge.builder("keycloak.token.pool.pending", tokenConnectionManager, cm -> cm.getTotalStats().getPending())
+                .description("Requests waiting for token endpoint connection").register(registry);
+            Gauge.builder("keycloak.token.pool.max", tokenConnectionManager, cm -> cm.getTotalStats().getMax())
+                .description("Token endpoint connection pool size").register(registry);
+        };
+    }
+}
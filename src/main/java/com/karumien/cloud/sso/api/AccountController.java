@@ -7,20 +7,16 @@
 package com.karumien.cloud.sso.api;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 import javax.validation.Valid;
 
-import org.keycloak.representations.idm.UserRepresentation;
-import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
@@ -28,9 +24,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.karumien.cloud.sso.api.entity.RebirthEntity;
+import com.karumien.cloud.sso.CatalogResponses;
 import com.karumien.cloud.sso.api.handler.AccountsApi;
 import com.karumien.cloud.sso.api.model.AccountInfo;
 import com.karumien.cloud.sso.api.model.AccountPropertyType;
@@ -47,6 +43,10 @@ import com.karumien.cloud.sso.api.model.IdentityRoleInfo;
 import com.karumien.cloud.sso.api.model.IdentityState;
 import com.karumien.cloud.sso.api.model.ModuleInfo;
 import com.karumien.cloud.sso.api.model.OnBoardingInfo;
+import com.karumien.cloud.sso.api.model.OnBoardingJob;
+import com.karumien.cloud.sso.api.model.OnBoardingResult;
+import com.karumien.cloud.sso.api.model.RebirthBatch;
+import com.karumien.cloud.sso.api.model.RebirthResult;
 import com.karumien.cloud.sso.api.model.RoleInfo;
 import com.karumien.cloud.sso.exceptions.IdNotFoundException;
 import com.karumien.cloud.sso.exceptions.IdentityNotFoundException;
@@ -56,6 +56,8 @@ import com.karumien.cloud.sso.exceptions.UnsupportedApiOperationException;
 import com.karumien.cloud.sso.service.AccountService;
 import com.karumien.cloud.sso.service.AuthService;
 import com.karumien.cloud.sso.service.IdentityService;
+import com.karumien.cloud.sso.service.OnBoardingJobService;
+import com.karumien.cloud.sso.service.OnBoardingService;
 import com.karumien.cloud.sso.service.RebirthService;
 import com.karumien.cloud.sso.service.RoleService;
 import com.karumien.cloud.sso.service.SearchService;
@@ -90,12 +92,18 @@ public class AccountController implements AccountsApi {
     
     @Autowired
     private RebirthService rebirthService;
+
+    @Autowired
+    private OnBoardingService onBoardingService;
+
+    @Autowired
+    private OnBoardingJobService onBoardingJobService;
     
     @Autowired
     private SearchService searchService;
 
     @Autowired
-    private ObjectMapper mapper;
+    private CatalogResponses catalogResponses;
 
     @Value("${DB_PASSWORD:admMe123}")
     private String secret;
@@ -211,16 +219,15 @@ public class AccountController implements AccountsApi {
     }
 
     private OnBoardingInfo getOnboarding(String nav4Id, boolean maskPassword) throws IOException {
-        
-    	RebirthEntity rebirth = rebirthService.getRebirth(nav4Id);
-        
-        OnBoardingInfo onboarding = mapper.readValue(rebirth.getValue(), OnBoardingInfo.class);
+        return rebirthService.getOnboarding(rebirthService.getRebirth(nav4Id));
+    }
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd");
-        onboarding.setNote((StringUtils.hasText(onboarding.getNote()) ? onboarding.getNote() + ", " : "")
-    		+ LocalDateTime.now().format(formatter) + "-RBRTH");
-        
-        return onboarding;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResponseEntity<List<RebirthResult>> rebirthIdentitiesNav4(RebirthBatch rebirth) {
+        return new ResponseEntity<>(rebirthService.rebirth(rebirth), HttpStatus.OK);
     }
 
     /**
@@ -255,8 +262,8 @@ public class AccountController implements AccountsApi {
                 IdentityInfo identityC = identityService.getIdentityByNav4(nav4Id, false);
                 if (apply) {
                     ClientRedirect clientRedirect = new ClientRedirect();
-                    clientRedirect.setClientId("clientzone");
-                    clientRedirect.setRedirectUri("http://clients.eurowag.com/");
+                    clientRedirect.setClientId(RebirthService.DEFAULT_CLIENT_ID);
+                    clientRedirect.setRedirectUri(RebirthService.DEFAULT_REDIRECT_URI);
                     identityService.resetPasswordUserActionNav4(nav4Id, clientRedirect);
                     identityC.setNote(addNote("Identity is " + identityC.getState() + " - new reset email sent to "
                         + identityC.getEmail() + ", username = " + identityC.getUsername(), identityC.getNote()));
@@ -280,8 +287,8 @@ public class AccountController implements AccountsApi {
 
                             IdentityInfo identityCX = identityService.getIdentityByNav4(nav4Id, false);
                             ClientRedirect clientRedirect = new ClientRedirect();
-                            clientRedirect.setClientId("clientzone");
-                            clientRedirect.setRedirectUri("http://clients.eurowag.com/");
+                            clientRedirect.setClientId(RebirthService.DEFAULT_CLIENT_ID);
+                            clientRedirect.setRedirectUri(RebirthService.DEFAULT_REDIRECT_URI);
                             identityService.resetPasswordUserActionNav4(nav4Id, clientRedirect);
                             identityCX.setNote(addNote("Identity created by /rebirth function from full NAV4 export, state " + identityCX.getState() + " - new reset email sent to "
                                 + identityCX.getEmail() + ", username = " + identityCX.getUsername(), identityCX.getNote()));
@@ -364,10 +371,7 @@ public class AccountController implements AccountsApi {
             throw new IdNotFoundException("NAV4 ID");
         }
         try {
-            rebirthService.createRebirth(RebirthEntity.builder()
-                .nav4Id(onBoardingInfos.getIdentity().getNav4Id())
-                .value(mapper.writeValueAsString(onBoardingInfos))
-                .build());
+            rebirthService.createRebirth(onBoardingInfos);
         } catch (IOException e) {
             return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);        
         }
@@ -500,8 +504,8 @@ public class AccountController implements AccountsApi {
      * {@inheritDoc}
      */
     @Override
-    public ResponseEntity<List<ModuleInfo>> getAccountHierarchy(String accountNumber) {
-        return new ResponseEntity<>(accountService.getAccountHierarchy(accountNumber), HttpStatus.OK);
+    public ResponseEntity<List<ModuleInfo>> getAccountHierarchy(String accountNumber, String ifNoneMatch) {
+        return catalogResponses.ofTranslated(accountService.getAccountHierarchyCatalog(accountNumber), ifNoneMatch);
     }
     
     /**
@@ -596,7 +600,8 @@ public class AccountController implements AccountsApi {
      * {@inheritDoc}
      */
     @Override
-    public ResponseEntity<List<AccountInfo>> searchAccount(String accountNumber, String compRegNo, String name, String contactEmail, String note) {
+    public ResponseEntity<List<AccountInfo>> searchAccount(String accountNumber, String compRegNo, String name, String contactEmail, String note,
+            Integer page, Integer size, List<String> sort) {
 
         Map<AccountPropertyType, String> searchFilter = new HashMap<>();
         accountService.putIfPresent(searchFilter, AccountPropertyType.ATTR_COMP_REG_NO, compRegNo);
@@ -609,7 +614,7 @@ public class AccountController implements AccountsApi {
            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
         }
         
-        List<AccountInfo> found = accountService.search(searchFilter);
+        List<AccountInfo> found = accountService.search(searchFilter, PageableUtils.getSearchRequest(page, size, sort, DEFAULT_PROPERTIES));
         return CollectionUtils.isEmpty(found) ? new ResponseEntity<>(HttpStatus.GONE) : new ResponseEntity<>(found, HttpStatus.OK);
     }    
     
@@ -627,108 +632,44 @@ public class AccountController implements AccountsApi {
     @Override
     public ResponseEntity<List<IdentityInfo>> onboarding(@Valid List<OnBoardingInfo> onBoardingInfos) {
 
-        List<IdentityInfo> found = new ArrayList<>();
-        
-        for (OnBoardingInfo onBoardingInfo : onBoardingInfos) {
-        
-            try {
-                // note
-                if (StringUtils.hasText(onBoardingInfo.getNote())) {
-                    MDC.put("note_full", onBoardingInfo.getNote());
-                }
-                
-                // account
-                if (onBoardingInfo.getAccount() != null) {
+        // single item: failed Account/Identity/Roles is 410, error of credentials is thrown
+        if (onBoardingInfos.size() == 1) {
+            IdentityInfo identity = onBoardingService.onboarding(onBoardingInfos.get(0));
+            return identity == null ? new ResponseEntity<>(HttpStatus.GONE) : new ResponseEntity<>(Arrays.asList(identity), HttpStatus.CREATED);
+        }
 
-                    MDC.put("accountNumber", onBoardingInfo.getAccount().getAccountNumber());
+        List<IdentityInfo> found = onBoardingService.onboarding(onBoardingInfos).stream()
+            .map(OnBoardingResult::getIdentity).filter(Objects::nonNull).collect(Collectors.toList());
 
-                    // notes
-                    if (!StringUtils.hasText(onBoardingInfo.getAccount().getNote())) {
-                        onBoardingInfo.getAccount().setNote(onBoardingInfo.getNote());
-                    }
-                    
-                    if (!accountService.findAccount(onBoardingInfo.getAccount().getAccountNumber()).isPresent()) {                        
-                        accountService.createAccount(onBoardingInfo.getAccount());
-                    }
-                }
-                
-                // identity
-                if (onBoardingInfo.getIdentity() != null) {
-                    
-                    if (onBoardingInfo.getIdentity().getAccountNumber() == null && onBoardingInfo.getAccount() != null) {
-                        onBoardingInfo.getIdentity().setAccountNumber(onBoardingInfo.getAccount().getAccountNumber());
-                    }
-                    
-                    MDC.put("accountNumber", onBoardingInfo.getIdentity().getAccountNumber());
-                    MDC.put("contactNumber", onBoardingInfo.getIdentity().getContactNumber());
+        return CollectionUtils.isEmpty(found) ? new ResponseEntity<>(HttpStatus.GONE) : new ResponseEntity<>(found, HttpStatus.CREATED); 
+    }
 
-                    // notes
-                    if (!StringUtils.hasText(onBoardingInfo.getIdentity().getNote())) {
-                        onBoardingInfo.getIdentity().setNote(onBoardingInfo.getNote());
-                    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResponseEntity<List<OnBoardingResult>> onboardingBatch(@Valid List<OnBoardingInfo> onBoardingInfos) {
+        return new ResponseEntity<>(onBoardingService.onboarding(onBoardingInfos), HttpStatus.OK);
+    }
 
-                    Optional<UserRepresentation> identity = Optional.empty();
-                    
-                    if (StringUtils.hasText(onBoardingInfo.getIdentity().getNav4Id())) {
-                        MDC.put("nav4Id", onBoardingInfo.getIdentity().getNav4Id());                        
-                        identity = identityService.findIdentityNav4(onBoardingInfo.getIdentity().getNav4Id());
-                    } else {
-                        identity = identityService.findIdentity(onBoardingInfo.getIdentity().getContactNumber(), true);
-                    }
-                    
-                    IdentityInfo identityInfo = null;
-                    
-                    if (identity.isPresent()) {
-                        MDC.put("identityId", identity.get().getId());
-
-                        if (Boolean.TRUE.equals(onBoardingInfo.isOverwriteIdentity())) {
-                            identityInfo = identityService.updateIdentity(onBoardingInfo.getIdentity().getContactNumber(), 
-                                onBoardingInfo.getIdentity(), UpdateType.UPDATE);
-                        } else {
-                            identityInfo = identityService.mapping(identity.get(), false);
-                        }
-                        
-                        if (!CollectionUtils.isEmpty(onBoardingInfo.getRoles()) && onBoardingInfo.isOverwriteRoles()) {
-                            identityService.updateRolesOfIdentity(
-                                identityInfo.getIdentityId(), onBoardingInfo.getRoles(), UpdateType.ADD, null);
-                        }
-                        
-                    } else {
-                        identityInfo = identityService.createIdentity(onBoardingInfo.getIdentity());
-                        if (!CollectionUtils.isEmpty(onBoardingInfo.getRoles())) {
-                            identityService.updateRolesOfIdentity(
-                                identityInfo.getIdentityId(), onBoardingInfo.getRoles(), UpdateType.ADD, null);
-                        }
-                    }   
-                    
-                    try {
-                        if ((!identity.isPresent() || identity.isPresent() && onBoardingInfo.isOverwritePassword()) 
-                                && identityInfo != null && onBoardingInfo.getCredentials() != null) {
-                            if (StringUtils.hasText(onBoardingInfo.getIdentity().getNav4Id())) {
-                                identityService.createIdentityCredentialsNav4(onBoardingInfo.getIdentity().getNav4Id(), onBoardingInfo.getCredentials());
-                            } else {
-                                identityService.createIdentityCredentials(onBoardingInfo.getIdentity().getContactNumber(), onBoardingInfo.getCredentials());
-                            }
-                            identityInfo.setState(IdentityState.CREDENTIALS_CREATED);
-                        }
-                    } finally {
-                        found.add(identityInfo);
-                    }
-                }
-                
-            } catch (Exception e) {
-                if (found.size() == 1) {
-                    if (e instanceof RuntimeException) {
-                       throw e;
-                    } else {
-                       return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);                  
-                    }
-                }
-                log.warn("Error import " + onBoardingInfo, e);                    
-            }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResponseEntity<OnBoardingJob> createOnboardingJob(MultipartFile file) {
+        try (InputStream ndjson = file.getInputStream()) {
+            return new ResponseEntity<>(onBoardingJobService.createJob(ndjson), HttpStatus.ACCEPTED);
+        } catch (IOException e) {
+            return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
         }
-        
-        return CollectionUtils.isEmpty(found) ? new ResponseEntity<>(HttpStatus.GONE) : new ResponseEntity<>(found, HttpStatus.CREATED); 
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResponseEntity<OnBoardingJob> getOnboardingJob(String jobId) {
+        return new ResponseEntity<>(onBoardingJobService.getJob(jobId), HttpStatus.OK);
     }
     
     /**
@@ -8,6 +8,7 @@ package com.karumien.cloud.sso.api;
 
 import java.io.ByteArrayInputStream;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.NotAuthorizedException;
@@ -17,12 +18,14 @@ import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.jayway.jsonpath.JsonPath;
+import com.karumien.cloud.sso.CatalogResponses;
 import com.karumien.cloud.sso.api.handler.AuthApi;
 import com.karumien.cloud.sso.api.model.AuthorizationRequest;
 import com.karumien.cloud.sso.api.model.AuthorizationResponse;
@@ -33,13 +36,18 @@ import com.karumien.cloud.sso.api.model.ErrorDataCodeCredentials;
 import com.karumien.cloud.sso.api.model.ErrorMessage;
 import com.karumien.cloud.sso.api.model.GrantType;
 import com.karumien.cloud.sso.api.model.IdentityInfo;
+import com.karumien.cloud.sso.api.model.IntrospectionRequest;
+import com.karumien.cloud.sso.api.model.IntrospectionResponse;
+import com.karumien.cloud.sso.api.model.JsonWebKeySet;
 import com.karumien.cloud.sso.api.model.PasswordPolicy;
 import com.karumien.cloud.sso.api.model.UserActionType;
 import com.karumien.cloud.sso.api.model.UsernamePolicy;
 import com.karumien.cloud.sso.exceptions.PasswordPolicyException;
+import com.karumien.cloud.sso.internal.Catalog;
 import com.karumien.cloud.sso.exceptions.UnsupportedApiOperationException;
 import com.karumien.cloud.sso.service.AuthService;
 import com.karumien.cloud.sso.service.IdentityService;
+import com.karumien.cloud.sso.service.RealmKeyService;
 
 import io.swagger.annotations.Api;
 
@@ -61,6 +69,12 @@ public class AuthController implements AuthApi  {
     
     @Autowired
     private MessageSource messageSource;
+
+    @Autowired
+    private RealmKeyService realmKeyService;
+
+    @Autowired
+    private CatalogResponses catalogResponses;
     
     /**
      * {@inheritDoc}
@@ -68,7 +82,22 @@ public class AuthController implements AuthApi  {
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
     public ResponseEntity<Void> publicKey() {
-        return new ResponseEntity(authService.getPublicKey(), HttpStatus.OK);
+        return (ResponseEntity) ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(realmKeyService.getMaxAge(), TimeUnit.SECONDS).cachePublic())
+            .body(authService.getPublicKey());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResponseEntity<JsonWebKeySet> jwks(String ifNoneMatch) {
+        String etag = realmKeyService.getETag();
+        CacheControl cacheControl = CacheControl.maxAge(realmKeyService.getMaxAge(), TimeUnit.SECONDS).cachePublic();
+        if (Catalog.isNotModified(etag, ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(realmKeyService.getJsonWebKeySet());
     }
     
     /**
@@ -224,18 +253,26 @@ public class AuthController implements AuthApi  {
      * {@inheritDoc}
      */
     @Override
-    public ResponseEntity<PasswordPolicy> getPasswordPolicy() {
-        return new ResponseEntity<>(authService.getPasswordPolicy(), HttpStatus.OK);
+    public ResponseEntity<PasswordPolicy> getPasswordPolicy(String ifNoneMatch) {
+        return catalogResponses.ofTranslated(authService.getPasswordPolicyCatalog(), ifNoneMatch);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public ResponseEntity<UsernamePolicy> getUsernamePolicy() {
-        return new ResponseEntity<>(authService.getUsernamePolicy(), HttpStatus.OK);
+    public ResponseEntity<UsernamePolicy> getUsernamePolicy(String ifNoneMatch) {
+        return catalogResponses.ofTranslated(authService.getUsernamePolicyCatalog(), ifNoneMatch);
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResponseEntity<IntrospectionResponse> introspect(IntrospectionRequest request) {
+        return new ResponseEntity<>(authService.introspect(request.getToken(), request.getAudience()), HttpStatus.OK);
+    }
+
     protected String decodeJWT(String jwtToken) {
     
         String[] split_string = jwtToken.split("\\.");
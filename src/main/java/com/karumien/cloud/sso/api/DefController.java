@@ -8,15 +8,20 @@ package com.karumien.cloud.sso.api;
 
 import java.util.Arrays;
 
-import org.springframework.http.HttpStatus;
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karumien.cloud.sso.CatalogResponses;
 import com.karumien.cloud.sso.api.handler.DefApi;
 import com.karumien.cloud.sso.api.model.ErrorDataCodeCredentials;
 import com.karumien.cloud.sso.api.model.ErrorDataCodeCredentialsSpecification;
 import com.karumien.cloud.sso.api.model.ErrorDataCodeLogin;
 import com.karumien.cloud.sso.api.model.ErrorDataCodeLoginSpecification;
+import com.karumien.cloud.sso.internal.Catalog;
 
 import io.swagger.annotations.Api;
 
@@ -30,23 +35,43 @@ import io.swagger.annotations.Api;
 @Api(value = "Definitions", description = "Specification of Definitions", tags = { "Definitions" })
 public class DefController implements DefApi  {
 
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private CatalogResponses catalogResponses;
+
+    /** Definitions are changed only by deployment */
+    private Catalog<ErrorDataCodeLoginSpecification> errorDataCodeLogin;
+
+    private Catalog<ErrorDataCodeCredentialsSpecification> errorDataCodeCredentials;
+
+    @PostConstruct
+    public void init() {
+        long started = System.currentTimeMillis();
+
+        ErrorDataCodeLoginSpecification login = new ErrorDataCodeLoginSpecification();
+        login.setEnum(Arrays.asList(ErrorDataCodeLogin.values()));
+        errorDataCodeLogin = Catalog.of(mapper, login, started);
+
+        ErrorDataCodeCredentialsSpecification credentials = new ErrorDataCodeCredentialsSpecification();
+        credentials.setEnum(Arrays.asList(ErrorDataCodeCredentials.values()));
+        errorDataCodeCredentials = Catalog.of(mapper, credentials, started);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public ResponseEntity<ErrorDataCodeLoginSpecification> getErrorDataCodeLogin() {
-        ErrorDataCodeLoginSpecification specification = new ErrorDataCodeLoginSpecification();
-        specification.setEnum(Arrays.asList(ErrorDataCodeLogin.values()));
-        return new ResponseEntity<>(specification, HttpStatus.OK);
+    public ResponseEntity<ErrorDataCodeLoginSpecification> getErrorDataCodeLogin(String ifNoneMatch) {
+        return catalogResponses.of(errorDataCodeLogin, ifNoneMatch);
     }
     
     /**
      * {@inheritDoc}
      */
     @Override
-    public ResponseEntity<ErrorDataCodeCredentialsSpecification> getErrorDataCodeCredentials() {
-        ErrorDataCodeCredentialsSpecification specification = new ErrorDataCodeCredentialsSpecification();
-        specification.setEnum(Arrays.asList(ErrorDataCodeCredentials.values()));
-        return new ResponseEntity<>(specification, HttpStatus.OK);
+    public ResponseEntity<ErrorDataCodeCredentialsSpecification> getErrorDataCodeCredentials(String ifNoneMatch) {
+        return catalogResponses.of(errorDataCodeCredentials, ifNoneMatch);
     }
 }
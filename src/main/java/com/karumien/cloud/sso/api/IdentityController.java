@@ -29,6 +29,8 @@ import com.karumien.cloud.sso.api.model.ErrorDataCodeCredentials;
 import com.karumien.cloud.sso.api.model.ErrorMessage;
 import com.karumien.cloud.sso.api.model.IdentityInfo;
 import com.karumien.cloud.sso.api.model.IdentityPropertyType;
+import com.karumien.cloud.sso.api.model.IdentityRolesResult;
+import com.karumien.cloud.sso.api.model.IdentityRolesUpdate;
 import com.karumien.cloud.sso.api.model.IdentityState;
 import com.karumien.cloud.sso.exceptions.PasswordPolicyException;
 import com.karumien.cloud.sso.service.AuthService;
@@ -172,6 +174,14 @@ public class IdentityController implements IdentitiesApi {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResponseEntity<List<IdentityRolesResult>> updateIdentitiesRoles(IdentityRolesUpdate update) {
+        return new ResponseEntity<>(identityService.updateRolesOfIdentities(update), HttpStatus.OK);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -477,6 +487,9 @@ public class IdentityController implements IdentitiesApi {
     @Override
     public ResponseEntity<String> getIdentityBinaryRights(String contactNumber) {
     	String binaryRights = identityService.getSimpleAttribute(contactNumber, IdentityService.ATTR_BINARY_RIGHTS);
+    	if (!StringUtils.hasText(binaryRights)) {
+    	    binaryRights = roleService.getIdentityBinaryMask(contactNumber);
+    	}
         return new ResponseEntity<>(binaryRights, StringUtils.hasText(binaryRights) ? HttpStatus.OK : HttpStatus.NO_CONTENT);
     }
 
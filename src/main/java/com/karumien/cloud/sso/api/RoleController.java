@@ -13,6 +13,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.karumien.cloud.sso.CatalogResponses;
 import com.karumien.cloud.sso.api.handler.RolesApi;
 import com.karumien.cloud.sso.api.model.RoleInfo;
 import com.karumien.cloud.sso.service.RoleService;
@@ -31,6 +32,9 @@ public class RoleController implements RolesApi {
     
 	@Autowired
     private RoleService roleService;
+
+    @Autowired
+    private CatalogResponses catalogResponses;
 	
     /**
      * {@inheritDoc}
@@ -61,13 +65,16 @@ public class RoleController implements RolesApi {
      * {@inheritDoc}
      */
     @Override
-    public ResponseEntity<List<RoleInfo>> getRoles() {
-        return new ResponseEntity<>(roleService.getRoles(), HttpStatus.OK);
+    public ResponseEntity<List<RoleInfo>> getRoles(String ifNoneMatch) {
+        return catalogResponses.ofTranslated(roleService.getRolesCatalog(), ifNoneMatch);
     }
     
+    /**
+     * {@inheritDoc}
+     */
     @Override
-    public ResponseEntity<List<RoleInfo>> getRights() {
-        return new ResponseEntity<>(roleService.getRights(), HttpStatus.OK);
+    public ResponseEntity<List<RoleInfo>> getRights(String ifNoneMatch) {
+        return catalogResponses.ofTranslated(roleService.getRightsCatalog(), ifNoneMatch);
     }
 
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.entity;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+import org.springframework.data.annotation.Immutable;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Composite Role edge (composite role contains child role).
+ */
+@Entity
+@Table(name = "COMPOSITE_ROLE")
+@Data
+@EqualsAndHashCode(of = { "composite", "childRole" })
+@IdClass(CompositeRoleID.class)
+@Immutable
+public class CompositeRole implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "COMPOSITE", length = 36)
+    private String composite;
+
+    @Id
+    @Column(name = "CHILD_ROLE", length = 36)
+    private String childRole;
+
+}
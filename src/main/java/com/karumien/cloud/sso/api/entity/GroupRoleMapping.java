@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.entity;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+import org.springframework.data.annotation.Immutable;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Group's assigned Role (inherited by members and subgroups).
+ */
+@Entity
+@Table(name = "GROUP_ROLE_MAPPING")
+@Data
+@EqualsAndHashCode(of = { "roleId", "groupId" })
+@IdClass(GroupRoleMappingID.class)
+@Immutable
+public class GroupRoleMapping implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "ROLE_ID", length = 36)
+    private String roleId;
+
+    @Id
+    @Column(name = "GROUP_ID", length = 36)
+    private String groupId;
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.entity;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Asynchronous onboarding Job with progress, records are in {@link OnBoardingJobItem}.
+ */
+@Entity
+@Table(name = "PLUGIN_ONBOARDING_JOB")
+@Data
+@EqualsAndHashCode(of = "id")
+public class OnBoardingJobEntity implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "ID", length = 36)
+    private String id;
+
+    @Column(name = "STATE", length = 20)
+    private String state;
+
+    @Column(name = "TOTAL")
+    private long total;
+
+    /** Position of first not processed record */
+    @Column(name = "COMMITTED_OFFSET")
+    private long committedOffset;
+
+    @Column(name = "CREATED_COUNT")
+    private long createdCount;
+
+    @Column(name = "UPDATED_COUNT")
+    private long updatedCount;
+
+    @Column(name = "EXISTS_COUNT")
+    private long existsCount;
+
+    @Column(name = "SKIPPED_COUNT")
+    private long skippedCount;
+
+    @Column(name = "FAILED_COUNT")
+    private long failedCount;
+
+    @Column(name = "CREATED")
+    private Instant created;
+
+    @Column(name = "STARTED")
+    private Instant started;
+
+    @Column(name = "FINISHED")
+    private Instant finished;
+
+    /** Instance processing the Job, lease expires when heartbeat is not refreshed */
+    @Column(name = "OWNER", length = 100)
+    private String owner;
+
+    @Column(name = "HEARTBEAT")
+    private Instant heartbeat;
+
+    /** Count of processing attempts, Job fails after configured maximum */
+    @Column(name = "ATTEMPTS")
+    private int attempts;
+
+    /** Reason of failed Job */
+    @Column(name = "MESSAGE", length = 1024)
+    private String message;
+
+}
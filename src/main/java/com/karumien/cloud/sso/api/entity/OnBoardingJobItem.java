@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.entity;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.springframework.data.domain.Persistable;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One NDJSON record of asynchronous onboarding Job, processed records are deleted, failed are kept with message.
+ */
+@Entity
+@Table(name = "PLUGIN_ONBOARDING_JOB_ITEM")
+@Data
+@EqualsAndHashCode(of = { "jobId", "position" })
+@IdClass(OnBoardingJobItemID.class)
+public class OnBoardingJobItem implements Serializable, Persistable<OnBoardingJobItemID> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int VALUE_LENGTH = 10000;
+
+    public static final String STATUS_ERROR = "ERROR";
+
+    @Id
+    @Column(name = "JOB_ID", length = 36)
+    private String jobId;
+
+    @Id
+    @Column(name = "POSITION")
+    private long position;
+
+    @Column(name = "VALUE", length = VALUE_LENGTH)
+    private String value;
+
+    @Column(name = "STATUS", length = 20)
+    private String status;
+
+    @Column(name = "MESSAGE", length = 1024)
+    private String message;
+
+    /** Assigned ID - insert without select on save */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
+    @Override
+    public OnBoardingJobItemID getId() {
+        return new OnBoardingJobItemID(jobId, position);
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
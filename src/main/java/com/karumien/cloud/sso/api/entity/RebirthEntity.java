@@ -40,8 +40,13 @@ public class RebirthEntity implements Serializable {
     @Column(name = "ID", length = 36)
     private String nav4Id;
 
+    /** Legacy JSON skeleton, {@link #payload} is added on first read (JSON is kept until cleanup, see upgrade.sql) */
     @Column(name = "VALUE", length = 3000)
     private String value; 
 
+    /** Versioned compact skeleton, see {@link com.karumien.cloud.sso.internal.RebirthCodec} */
+    @Column(name = "PAYLOAD")
+    private byte[] payload;
+
 }
 
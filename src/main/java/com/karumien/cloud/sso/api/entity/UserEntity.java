@@ -7,16 +7,20 @@
 package com.karumien.cloud.sso.api.entity;
 
 import java.io.Serializable;
+import java.util.Set;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
 import org.springframework.data.annotation.Immutable;
 
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 /**
  * User Entity.
@@ -54,6 +58,16 @@ public class UserEntity implements Serializable {
 
     @Column(name = "EMAIL_VERIFIED")
     private Boolean emailVerified;
+
+    @Column(name = "ENABLED")
+    private Boolean enabled;
+
+    @Column(name = "CREATED_TIMESTAMP")
+    private Long createdTimestamp;
+
+    @OneToMany(mappedBy = "user", fetch = FetchType.LAZY)
+    @ToString.Exclude
+    private Set<UserAttribute> attributes;
     
 }
 
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.entity;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+import org.springframework.data.annotation.Immutable;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * User's membership in Group.
+ */
+@Entity
+@Table(name = "USER_GROUP_MEMBERSHIP")
+@Data
+@EqualsAndHashCode(of = { "groupId", "userId" })
+@IdClass(UserGroupMembershipID.class)
+@Immutable
+public class UserGroupMembership implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "GROUP_ID", length = 36)
+    private String groupId;
+
+    @Id
+    @Column(name = "USER_ID", length = 36)
+    private String userId;
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import com.karumien.cloud.sso.api.entity.AccountEntity;
+import com.karumien.cloud.sso.api.model.AccountPropertyType;
+
+/**
+ * Search criteria for {@link AccountEntity} - all filter keys are combined in one SQL query.
+ */
+public class AccountSearchSpecification implements Specification<AccountEntity> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<AccountPropertyType, String> searchFilter;
+
+    public AccountSearchSpecification(Map<AccountPropertyType, String> searchFilter) {
+        this.searchFilter = searchFilter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Predicate toPredicate(Root<AccountEntity> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+
+        List<Predicate> predicates = new ArrayList<>();
+
+        for (Map.Entry<AccountPropertyType, String> filter : searchFilter.entrySet()) {
+            predicates.add(toPredicate(root, cb, filter.getKey(), filter.getValue()));
+        }
+
+        return cb.and(predicates.toArray(new Predicate[predicates.size()]));
+    }
+
+    private Predicate toPredicate(Root<AccountEntity> root, CriteriaBuilder cb, AccountPropertyType key, String value) {
+
+        if (!StringUtils.hasText(value)) {
+            return cb.disjunction();
+        }
+
+        switch (key) {
+        case ATTR_ACCOUNT_NUMBER:
+            return cb.equal(root.get("accountNumber"), value);
+        case ATTR_ACCOUNT_NAME:
+            return cb.like(root.get("name"), value);
+        case ATTR_COMP_REG_NO:
+            return cb.like(root.get("compRegNo"), value);
+        case ATTR_CONTACT_EMAIL:
+            return cb.like(root.get("contactEmail"), value.toLowerCase());
+        case ATTR_NOTE:
+            return cb.like(root.get("note"), value);
+        default:
+            return cb.disjunction();
+        }
+    }
+
+}
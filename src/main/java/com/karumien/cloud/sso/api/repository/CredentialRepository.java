@@ -6,6 +6,7 @@
  */
 package com.karumien.cloud.sso.api.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -43,4 +44,14 @@ public interface CredentialRepository extends JpaSpecificationExecutor<Credentia
      */
     @Query("select ce.userId from CredentialEntity ce where ce.type = :type")
     List<String> findUserIdByCredentialsType(@Param("type") String type);
+
+    /**
+     * Search users having credentials of type.
+     * 
+     * @param userIds users primary keys
+     * @param type credential type
+     * @return {@link List} of user IDs
+     */
+    @Query("select distinct ce.userId from CredentialEntity ce where ce.userId in :userIds and ce.type = :type")
+    List<String> findUserIdsByUserIdsAndType(@Param("userIds") Collection<String> userIds, @Param("type") String type);
 }
@@ -6,6 +6,7 @@
  */
 package com.karumien.cloud.sso.api.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -34,4 +35,14 @@ public interface GroupEntityRepository extends JpaSpecificationExecutor<GroupEnt
     @Query("select ge.id from GroupEntity ge where ge.name = :name and ge.realm = :realm and (ge.parent is null or ge.parent = ' ')")
     List<String> findGroupIdsByName(@Param("name") String name, @Param("realm") String realm);
 
+    /**
+     * Load parents of groups.
+     * 
+     * @param groupIds
+     *            group IDs (max. 1000)
+     * @return {@link List} of pairs [group ID, parent group ID]
+     */
+    @Query("select ge.id, ge.parent from GroupEntity ge where ge.id in :groupIds")
+    List<Object[]> findParentIdsByIds(@Param("groupIds") Collection<String> groupIds);
+
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.karumien.cloud.sso.api.entity.GroupRoleMapping;
+import com.karumien.cloud.sso.api.entity.GroupRoleMappingID;
+
+/**
+ * Repository for operations on {@link GroupRoleMapping}.
+ */
+@Repository
+public interface GroupRoleMappingRepository extends JpaRepository<GroupRoleMapping, GroupRoleMappingID> {
+
+    /**
+     * Load assigned realm roles of groups.
+     * 
+     * @param groupIds
+     *            IDs (max. 1000)
+     * @return {@link List} of pairs [group ID, role name]
+     */
+    @Query("select grm.groupId, r.name from GroupRoleMapping grm, RoleEntity r where grm.roleId = r.id and r.clientRole = false and grm.groupId in :groupIds")
+    List<Object[]> findRealmRoleNamesByGroupIds(@Param("groupIds") Collection<String> groupIds);
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import com.karumien.cloud.sso.api.entity.CredentialEntity;
+import com.karumien.cloud.sso.api.entity.UserAttribute;
+import com.karumien.cloud.sso.api.entity.UserEntity;
+import com.karumien.cloud.sso.api.model.IdentityPropertyType;
+
+/**
+ * Search criteria for {@link UserEntity} - all filter keys are resolved in one SQL query,
+ * every attribute criterion is one self-join of USER_ATTRIBUTE.
+ */
+public class IdentitySearchSpecification implements Specification<UserEntity> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String CREDENTIALS_TYPE = "password";
+
+    private final String realm;
+
+    private final Map<IdentityPropertyType, String> searchFilter;
+
+    public IdentitySearchSpecification(String realm, Map<IdentityPropertyType, String> searchFilter) {
+        this.realm = realm;
+        this.searchFilter = searchFilter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Predicate toPredicate(Root<UserEntity> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+
+        query.distinct(true);
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.equal(root.get("realm"), realm));
+
+        for (Map.Entry<IdentityPropertyType, String> filter : searchFilter.entrySet()) {
+            predicates.add(toPredicate(root, query, cb, filter.getKey(), filter.getValue()));
+        }
+
+        return cb.and(predicates.toArray(new Predicate[predicates.size()]));
+    }
+
+    private Predicate toPredicate(Root<UserEntity> root, CriteriaQuery<?> query, CriteriaBuilder cb, IdentityPropertyType key, String value) {
+
+        if (key == IdentityPropertyType.ATTR_HAS_CREDENTIALS) {
+            Subquery<String> credentials = query.subquery(String.class);
+            Root<CredentialEntity> credential = credentials.from(CredentialEntity.class);
+            credentials.select(credential.get("id")).where(
+                cb.equal(credential.get("userId"), root.get("userId")),
+                cb.equal(credential.get("type"), CREDENTIALS_TYPE));
+            return Boolean.parseBoolean(value) ? cb.exists(credentials) : cb.not(cb.exists(credentials));
+        }
+
+        // empty nav4Id - identity without attribute or with empty value
+        if (key == IdentityPropertyType.ATTR_NAV4ID && !StringUtils.hasText(value)) {
+            Join<UserEntity, UserAttribute> attribute = root.join("attributes", JoinType.LEFT);
+            attribute.on(cb.equal(attribute.get("name"), key.getValue()));
+            return cb.or(cb.isNull(attribute.get("id")), cb.equal(attribute.get("value"), ""));
+        }
+
+        if (!StringUtils.hasText(value)) {
+            return cb.disjunction();
+        }
+
+        switch (key) {
+        case ID:
+            return cb.equal(root.get("userId"), value);
+        case USERNAME:
+            return cb.equal(root.get("username"), value.toLowerCase());
+        case EMAIL:
+            return cb.equal(root.get("email"), value.toLowerCase());
+        case ATTR_NOTE:
+            return attribute(root, cb, key, value.toLowerCase());
+        default:
+            return attribute(root, cb, key, value);
+        }
+    }
+
+    private Predicate attribute(Root<UserEntity> root, CriteriaBuilder cb, IdentityPropertyType key, String value) {
+        Join<UserEntity, UserAttribute> attribute = root.join("attributes");
+        return cb.and(cb.equal(attribute.get("name"), key.getValue()), cb.equal(attribute.get("value"), value));
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.karumien.cloud.sso.api.entity.OnBoardingJobItem;
+import com.karumien.cloud.sso.api.entity.OnBoardingJobItemID;
+
+/**
+ * Repository for operations on {@link OnBoardingJobItem}.
+ */
+@Repository
+public interface OnBoardingJobItemRepository extends JpaRepository<OnBoardingJobItem, OnBoardingJobItemID> {
+
+    /**
+     * Load next records of Job.
+     * 
+     * @param jobId
+     *            Job's ID
+     * @param position
+     *            first position (committed offset)
+     * @param pageable
+     *            chunk size
+     * @return {@link List} of {@link OnBoardingJobItem} ordered by position
+     */
+    @Query("select i from OnBoardingJobItem i where i.jobId = :jobId and i.position >= :position order by i.position")
+    List<OnBoardingJobItem> findNext(@Param("jobId") String jobId, @Param("position") long position, Pageable pageable);
+
+    /**
+     * Load failed records of Job.
+     * 
+     * @param jobId
+     *            Job's ID
+     * @param pageable
+     *            maximal count
+     * @return {@link List} of failed {@link OnBoardingJobItem} ordered by position
+     */
+    @Query("select i from OnBoardingJobItem i where i.jobId = :jobId and i.status = '" + OnBoardingJobItem.STATUS_ERROR + "' order by i.position")
+    List<OnBoardingJobItem> findErrors(@Param("jobId") String jobId, Pageable pageable);
+
+    /**
+     * Delete processed records of Job.
+     * 
+     * @param jobId
+     *            Job's ID
+     * @param positions
+     *            positions of records (max. 1000)
+     */
+    @Modifying
+    @Query("delete from OnBoardingJobItem i where i.jobId = :jobId and i.position in :positions")
+    void deleteByPositions(@Param("jobId") String jobId, @Param("positions") Collection<Long> positions);
+
+    /**
+     * Delete all records of Job.
+     * 
+     * @param jobId
+     *            Job's ID
+     */
+    @Modifying
+    @Query("delete from OnBoardingJobItem i where i.jobId = :jobId")
+    void deleteByJobId(@Param("jobId") String jobId);
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.karumien.cloud.sso.api.entity.OnBoardingJobEntity;
+
+/**
+ * Repository for operations on {@link OnBoardingJobEntity}.
+ */
+@Repository
+public interface OnBoardingJobRepository extends JpaRepository<OnBoardingJobEntity, String> {
+
+    /**
+     * Search Jobs waiting for upload or processing (oldest first).
+     * 
+     * @param states
+     *            states of Jobs
+     * @return {@link List} of {@link OnBoardingJobEntity}
+     */
+    @Query("select j from OnBoardingJobEntity j where j.state in :states order by j.created")
+    List<OnBoardingJobEntity> findByStates(@Param("states") Collection<String> states);
+
+    /**
+     * Search Jobs finished before given time (for purge).
+     * 
+     * @param states
+     *            final states of Jobs
+     * @param before
+     *            finished before this time
+     * @return {@link List} of Job's IDs
+     */
+    @Query("select j.id from OnBoardingJobEntity j where j.state in :states and j.finished < :before")
+    List<String> findIdsFinishedBefore(@Param("states") Collection<String> states, @Param("before") Instant before);
+
+    /**
+     * Search Jobs in state without heartbeat since given time (ie. upload interrupted by crash).
+     * 
+     * @param state
+     *            state of Jobs
+     * @param before
+     *            last heartbeat before this time
+     * @return {@link List} of Job's IDs
+     */
+    @Query("select j.id from OnBoardingJobEntity j where j.state = :state and (j.heartbeat is null or j.heartbeat < :before)")
+    List<String> findIdsStale(@Param("state") String state, @Param("before") Instant before);
+
+    /**
+     * Take lease of Job when free, owned or expired.
+     * 
+     * @param id
+     *            Job's ID
+     * @param owner
+     *            instance ID
+     * @param now
+     *            new heartbeat
+     * @param expired
+     *            heartbeat before this time means expired lease
+     * @return 1 when lease is taken
+     */
+    @Modifying
+    @Query("update OnBoardingJobEntity j set j.owner = :owner, j.heartbeat = :now where j.id = :id"
+        + " and (j.owner is null or j.owner = :owner or j.heartbeat < :expired)")
+    int claim(@Param("id") String id, @Param("owner") String owner, @Param("now") Instant now, @Param("expired") Instant expired);
+
+}
@@ -6,8 +6,13 @@
  */
 package com.karumien.cloud.sso.api.repository;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.karumien.cloud.sso.api.entity.RebirthEntity;
@@ -20,4 +25,15 @@ import com.karumien.cloud.sso.api.entity.RebirthEntity;
  */
 @Repository
 public interface RebirthEntityRepository extends JpaSpecificationExecutor<RebirthEntity>, JpaRepository<RebirthEntity, String> {
+
+    /**
+     * Load Rebirths by NAV4 IDs in one query.
+     * 
+     * @param nav4Ids
+     *            NAV4 IDs (max. 1000)
+     * @return {@link List} of {@link RebirthEntity}
+     */
+    @Query("select r from RebirthEntity r where r.nav4Id in :nav4Ids")
+    List<RebirthEntity> findByNav4Ids(@Param("nav4Ids") Collection<String> nav4Ids);
+
 }
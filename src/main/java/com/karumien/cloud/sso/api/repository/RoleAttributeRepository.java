@@ -26,13 +26,13 @@ import com.karumien.cloud.sso.api.entity.RoleAttribute;
 public interface RoleAttributeRepository extends JpaSpecificationExecutor<RoleAttribute>, JpaRepository<RoleAttribute, String> {
 
     /**
-     * Search Users by RoleAttribute name and value.
+     * Load attributes of all realm roles.
      * 
-     * @param roleId
-     *            specific Role ID
-     * @return {@link List} of Roles attribute value
+     * @param realm
+     *            for specific realm
+     * @return {@link List} of {@link RoleAttribute}
      */
-    @Query("select ua.value from RoleAttribute ua where ua.name = 'binaryMask' and ua.roleId = :roleId")
-    List<String> findBinaryMaskForRole(@Param("roleId") String roleId);
+    @Query("select ra from RoleAttribute ra, RoleEntity r where ra.roleId = r.id and r.realm = :realm and r.clientRole = false")
+    List<RoleAttribute> findRealmRoleAttributes(@Param("realm") String realm);
 
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.karumien.cloud.sso.api.entity.RoleEntity;
+
+/**
+ * Repository for operations on {@link RoleEntity}.
+ */
+@Repository
+public interface RoleEntityRepository extends JpaRepository<RoleEntity, String> {
+
+    /**
+     * Load all realm (not client) roles.
+     * 
+     * @param realm
+     *            for specific realm
+     * @return {@link List} of {@link RoleEntity}
+     */
+    @Query("select r from RoleEntity r where r.realm = :realm and r.clientRole = false order by r.name")
+    List<RoleEntity> findRealmRoles(@Param("realm") String realm);
+
+    /**
+     * Load composite edges of realm roles as pairs (composite role name, child role name).
+     * 
+     * @param realm
+     *            for specific realm
+     * @return {@link List} of pairs [composite name, child name]
+     */
+    @Query("select p.name, c.name from CompositeRole cr, RoleEntity p, RoleEntity c "
+        + "where cr.composite = p.id and cr.childRole = c.id and p.realm = :realm and p.clientRole = false and c.clientRole = false "
+        + "order by p.name, c.name")
+    List<Object[]> findRealmCompositeNames(@Param("realm") String realm);
+
+}
@@ -6,6 +6,7 @@
  */
 package com.karumien.cloud.sso.api.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -63,4 +64,43 @@ public interface UserAttributeRepository extends JpaSpecificationExecutor<UserAt
     @Query("select ua.value from UserAttribute ua where ua.name = :attribute and ua.user.id = :userId")
     List<String> findValueByAttributeOfUserId(@Param("attribute") String attribute, @Param("userId") String userId);
 
+    /**
+     * Load all UserAttributes of specified Users in one query.
+     * 
+     * @param userIds
+     *            User's IDs
+     * @return {@link List} of {@link UserAttribute}
+     */
+    @Query("select ua from UserAttribute ua join fetch ua.user where ua.user.userId in :userIds")
+    List<UserAttribute> findByUserIds(@Param("userIds") Collection<String> userIds);
+
+    /**
+     * Search UserAttributes by name and multiple values in one query.
+     * 
+     * @param attribute
+     *            name ie contactNumber
+     * @param values
+     *            values of attribute
+     * @return {@link List} of {@link UserAttribute}
+     */
+    @Query("select ua from UserAttribute ua join fetch ua.user where ua.name = :attribute and ua.value in :values")
+    List<UserAttribute> findByAttributeValues(@Param("attribute") String attribute, @Param("values") Collection<String> values);
+
+    /**
+     * Search Users by UserAttribute name and multiple values with data for Identity state in one query.
+     * 
+     * @param attribute
+     *            name ie nav4Id
+     * @param values
+     *            values of attribute (max. 1000)
+     * @param lastLogin
+     *            name of last login attribute
+     * @return {@link List} of [attribute value, User's ID, count of password credentials, count of last login attributes]
+     */
+    @Query("select ua.value, ua.user.userId,"
+        + " (select count(ce) from CredentialEntity ce where ce.userId = ua.user.userId and ce.type = 'password'),"
+        + " (select count(ll) from UserAttribute ll where ll.user = ua.user and ll.name = :lastLogin)"
+        + " from UserAttribute ua where ua.name = :attribute and ua.value in :values")
+    List<Object[]> findIdentityStatesByAttributeValues(@Param("attribute") String attribute, @Param("values") Collection<String> values,
+        @Param("lastLogin") String lastLogin);
 }
@@ -6,6 +6,7 @@
  */
 package com.karumien.cloud.sso.api.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -23,7 +24,7 @@ import com.karumien.cloud.sso.api.entity.UserEntity;
  * @since 1.0, 9. 12. 2019 19:11:25 
  */
 @Repository
-public interface UserEntityRepository extends JpaSpecificationExecutor<UserEntity>, JpaRepository<UserEntity, String> {
+public interface UserEntityRepository extends JpaSpecificationExecutor<UserEntity>, JpaRepository<UserEntity, String>, UserEntityRepositoryCustom {
 
     /**
      * Search UserEntity by email.
@@ -48,4 +49,14 @@ public interface UserEntityRepository extends JpaSpecificationExecutor<UserEntit
      */
     @Query("select ue.userId from UserEntity ue where ue.realm = :realm and ue.username = :username")
     List<String> findUserIdsByUsername(@Param("realm") String realm, @Param("username") String username);
+
+    /**
+     * Load UserEntities by IDs in one query.
+     * 
+     * @param userIds
+     *            User's IDs
+     * @return {@link List} of {@link UserEntity}
+     */
+    @Query("select ue from UserEntity ue where ue.userId in :userIds")
+    List<UserEntity> findByUserIds(@Param("userIds") Collection<String> userIds);
 }
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.karumien.cloud.sso.api.entity.UserEntity;
+
+/**
+ * Projections of {@link UserEntity} search, implemented by {@link UserEntityRepositoryImpl}.
+ */
+public interface UserEntityRepositoryCustom {
+
+    /**
+     * Search IDs of users matching specification, only ID column is selected.
+     * 
+     * @param specification
+     *            search criteria
+     * @return {@link List} of User's IDs
+     */
+    List<String> findUserIds(Specification<UserEntity> specification);
+
+}
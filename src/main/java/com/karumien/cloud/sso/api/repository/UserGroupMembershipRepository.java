@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.karumien.cloud.sso.api.entity.UserGroupMembership;
+import com.karumien.cloud.sso.api.entity.UserGroupMembershipID;
+
+/**
+ * Repository for operations on {@link UserGroupMembership}.
+ */
+@Repository
+public interface UserGroupMembershipRepository extends JpaRepository<UserGroupMembership, UserGroupMembershipID> {
+
+    /**
+     * Load groups of users.
+     * 
+     * @param userIds
+     *            IDs (max. 1000)
+     * @return {@link List} of pairs [user ID, group ID]
+     */
+    @Query("select ugm.userId, ugm.groupId from UserGroupMembership ugm where ugm.userId in :userIds")
+    List<Object[]> findGroupIdsByUserIds(@Param("userIds") Collection<String> userIds);
+
+}
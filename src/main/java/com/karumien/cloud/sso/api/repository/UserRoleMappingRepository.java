@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.api.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.karumien.cloud.sso.api.entity.UserRoleMapping;
+import com.karumien.cloud.sso.api.entity.UserRoleMappingID;
+
+/**
+ * Repository for operations on {@link UserRoleMapping}.
+ */
+@Repository
+public interface UserRoleMappingRepository extends JpaRepository<UserRoleMapping, UserRoleMappingID> {
+
+    /**
+     * Load directly assigned realm roles of users.
+     * 
+     * @param userIds
+     *            IDs (max. 1000)
+     * @return {@link List} of pairs [user ID, role name]
+     */
+    @Query("select urm.userId, r.name from UserRoleMapping urm, RoleEntity r where urm.roleId = r.id and r.clientRole = false and urm.userId in :userIds")
+    List<Object[]> findRealmRoleNamesByUserIds(@Param("userIds") Collection<String> userIds);
+
+}
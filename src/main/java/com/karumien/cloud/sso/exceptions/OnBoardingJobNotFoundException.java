@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception when no onboarding Job exists - {@link HttpStatus#GONE}.
+ */
+@ResponseStatus(HttpStatus.GONE)
+public class OnBoardingJobNotFoundException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+
+    public OnBoardingJobNotFoundException(String jobId) {
+        super("Onboarding job not found: " + jobId);
+    }
+    
+}
@@ -8,6 +8,7 @@ package com.karumien.cloud.sso.internal;
 
 import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
 import static org.keycloak.OAuth2Constants.CLIENT_ID;
+import static org.keycloak.OAuth2Constants.CLIENT_SECRET;
 import static org.keycloak.OAuth2Constants.GRANT_TYPE;
 import static org.keycloak.OAuth2Constants.PASSWORD;
 import static org.keycloak.OAuth2Constants.REFRESH_TOKEN;
@@ -15,131 +16,118 @@ import static org.keycloak.OAuth2Constants.REQUESTED_SUBJECT;
 import static org.keycloak.OAuth2Constants.SUBJECT_TOKEN;
 import static org.keycloak.OAuth2Constants.TOKEN_EXCHANGE_GRANT_TYPE;
 
-import javax.ws.rs.BadRequestException;
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Form;
 
 import org.jboss.resteasy.client.jaxrs.ResteasyClient;
-import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
-import org.keycloak.admin.client.resource.BasicAuthFilter;
 import org.keycloak.admin.client.token.TokenService;
-import org.keycloak.common.util.Time;
 import org.keycloak.representations.AccessTokenResponse;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 /**
- * Added missing functionality of impersonate by login method.
+ * Stateless and thread-safe executor of token grants (password, client credentials, refresh token and token exchange
+ * for impersonation) over one shared {@link ResteasyClient}.
+ * <p>
+ * Every call gets its own {@link AdvancedTokenConfig}, nothing is kept between calls except {@link TokenService} proxies
+ * prepared once per server URL. Confidential clients authenticate by form parameters (client_secret_post), so one proxy
+ * serves all clients.
  *
  * @author <a href="miroslav.svoboda@karumien.com">Miroslav Svoboda</a>
  * @since 1.0, 1. 10. 2019 23:27:38 
  */
-public class AdvancedTokenManager {
-
-    private static final long DEFAULT_MIN_VALIDITY = 30;
-
-    private AccessTokenResponse currentToken;
-    private long expirationTime;
-    private long minTokenValidity = DEFAULT_MIN_VALIDITY;
-    private final AdvancedTokenConfig config;
-    private final TokenService tokenService;
-    private final String accessTokenGrantType;
-    private final String authToken;
-
-    public AdvancedTokenManager(AdvancedTokenConfig config, ResteasyClient client, String authToken) {        
-        this.config = config;
-        this.authToken = authToken;
-        ResteasyWebTarget target = client.target(config.getServerUrl());
-        if (!config.isPublicClient()) {
-            target.register(new BasicAuthFilter(config.getClientId(), config.getClientSecret()));
-        }
-        this.tokenService = target.proxy(TokenService.class);
-        this.accessTokenGrantType = config.getGrantType();
+public class AdvancedTokenManager implements Closeable {
 
-        if (CLIENT_CREDENTIALS.equals(accessTokenGrantType) && config.isPublicClient()) {
-            throw new IllegalArgumentException("Can't use " + GRANT_TYPE + "=" + CLIENT_CREDENTIALS + " with public client");
-        }
-    }
+    private static final String METRIC_GRANT = "keycloak.token.grant";
+
+    private final ResteasyClient client;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TokenService> tokenServices = new ConcurrentHashMap<>();
 
-    public String getAccessTokenString() {
-        return getAccessToken().getToken();
+    private volatile boolean closed;
+
+    public AdvancedTokenManager(ResteasyClient client, MeterRegistry meterRegistry) {
+        this.client = client;
+        this.meterRegistry = meterRegistry;
     }
 
-    public synchronized AccessTokenResponse getAccessToken() {
-        if (currentToken == null) {
-            grantToken();
-        } else if (tokenExpired()) {
-            refreshToken();
+    /**
+     * Prepares {@link TokenService} proxy for server URL (called on startup for default server).
+     *
+     * @param serverUrl
+     *            KeyCloak server URL
+     * @return {@link TokenService} proxy
+     */
+    public TokenService getTokenService(String serverUrl) {
+        if (closed) {
+            throw new IllegalStateException("Token manager is closed");
         }
-        return currentToken;
+        return tokenServices.computeIfAbsent(serverUrl, url -> client.target(url).proxy(TokenService.class));
     }
 
-    public AccessTokenResponse grantToken() {
-        Form form = new Form().param(GRANT_TYPE, accessTokenGrantType);
-        if (PASSWORD.equals(accessTokenGrantType)) {
+    /**
+     * Grant token by configured grant type.
+     *
+     * @param config
+     *            call configuration (server, realm, client and grant type)
+     * @param authToken
+     *            refresh token for {@link org.keycloak.OAuth2Constants#REFRESH_TOKEN} or subject token for
+     *            {@link org.keycloak.OAuth2Constants#TOKEN_EXCHANGE_GRANT_TYPE}
+     * @return {@link AccessTokenResponse} granted token
+     */
+    public AccessTokenResponse grantToken(AdvancedTokenConfig config, String authToken) {
+        String grantType = config.getGrantType();
+        if (CLIENT_CREDENTIALS.equals(grantType) && config.isPublicClient()) {
+            throw new IllegalArgumentException("Can't use " + GRANT_TYPE + "=" + CLIENT_CREDENTIALS + " with public client");
+        }
+
+        Form form = new Form().param(GRANT_TYPE, grantType);
+        if (PASSWORD.equals(grantType)) {
             form.param("username", config.getUsername())
                 .param("password", config.getPassword());
         }
 
-        if (TOKEN_EXCHANGE_GRANT_TYPE.equals(accessTokenGrantType)) {
+        if (TOKEN_EXCHANGE_GRANT_TYPE.equals(grantType)) {
             form.param(REQUESTED_SUBJECT, config.getUsername())
-                .param(CLIENT_ID, config.getClientId())
-                .param(SUBJECT_TOKEN, this.authToken);
-        }
-                
-        if (REFRESH_TOKEN.equals(accessTokenGrantType)) {
-            form.param(REFRESH_TOKEN, this.authToken);
-        }
-
-        if (config.isPublicClient()) {
-            form.param(CLIENT_ID, config.getClientId());
+                .param(SUBJECT_TOKEN, authToken);
         }
 
-        int requestTime = Time.currentTime();
-        synchronized (this) {
-            currentToken = tokenService.grantToken(config.getRealm(), form.asMap());
-            expirationTime = requestTime + currentToken.getExpiresIn();
+        if (REFRESH_TOKEN.equals(grantType)) {
+            form.param(REFRESH_TOKEN, authToken);
         }
-        return currentToken;
-    }
 
-    public synchronized AccessTokenResponse refreshToken() {
-        Form form = new Form().param(GRANT_TYPE, REFRESH_TOKEN)
-                              .param(REFRESH_TOKEN, currentToken.getRefreshToken());
-
-        if (config.isPublicClient()) {
-            form.param(CLIENT_ID, config.getClientId());
+        form.param(CLIENT_ID, config.getClientId());
+        if (!config.isPublicClient()) {
+            form.param(CLIENT_SECRET, config.getClientSecret());
         }
 
+        TokenService tokenService = getTokenService(config.getServerUrl());
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
         try {
-            int requestTime = Time.currentTime();
-
-            currentToken = tokenService.refreshToken(config.getRealm(), form.asMap());
-            expirationTime = requestTime + currentToken.getExpiresIn();
-            return currentToken;
-        } catch (BadRequestException e) {
-            return grantToken();
+            AccessTokenResponse token = tokenService.grantToken(config.getRealm(), form.asMap());
+            outcome = "success";
+            return token;
+        } catch (WebApplicationException e) {
+            outcome = String.valueOf(e.getResponse().getStatus());
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer(METRIC_GRANT, "grant_type", grantType, "outcome", outcome));
         }
     }
 
-    public synchronized void setMinTokenValidity(long minTokenValidity) {
-        this.minTokenValidity = minTokenValidity;
-    }
-
-    private synchronized boolean tokenExpired() {
-        return (Time.currentTime() + minTokenValidity) >= expirationTime;
-    }
-
     /**
-     * Invalidates the current token, but only when it is equal to the token passed as an argument.
-     *
-     * @param token the token to invalidate (cannot be null).
+     * Drops prepared proxies and rejects next grants, shared client is closed by its owner.
      */
-    public synchronized void invalidate(String token) {
-        if (currentToken == null) {
-            return; // There's nothing to invalidate.
-        }
-        if (token.equals(currentToken.getToken())) {
-            // When used next, this cause a refresh attempt, that in turn will cause a grant attempt if refreshing fails.
-            expirationTime = -1;
-        }
+    @Override
+    public void close() {
+        closed = true;
+        tokenServices.clear();
     }
 
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Counter of outbound calls (KeyCloak Admin REST, token endpoint, JPA statements) of one HTTP request.
+ * <p>
+ * Counter is bound to request thread, tasks submitted to executors have to be wrapped by
+ * {@link #propagate(Callable)} to be counted in request. Calls outside of request are not counted.
+ */
+public final class CallCounter {
+
+    /**
+     * Type of outbound call.
+     */
+    public enum Type {
+        KEYCLOAK, TOKEN, JPA;
+    }
+
+    private static final ThreadLocal<CallCounter> CURRENT = new ThreadLocal<>();
+
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(Type.values().length);
+
+    /**
+     * Start counting in current thread.
+     */
+    public static CallCounter start() {
+        CallCounter counter = new CallCounter();
+        CURRENT.set(counter);
+        return counter;
+    }
+
+    /**
+     * Returns counter of current thread, <code>null</code> when not counting.
+     */
+    public static CallCounter current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Stop counting in current thread.
+     */
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Count call in counter of current thread (if any).
+     */
+    public static void count(Type type) {
+        CallCounter counter = CURRENT.get();
+        if (counter != null) {
+            counter.counts.incrementAndGet(type.ordinal());
+        }
+    }
+
+    /**
+     * Wrap task so its calls are counted in counter of current thread.
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        CallCounter counter = CURRENT.get();
+        if (counter == null) {
+            return task;
+        }
+        return () -> {
+            CallCounter previous = CURRENT.get();
+            CURRENT.set(counter);
+            try {
+                return task.call();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    public int get(Type type) {
+        return counts.get(type.ordinal());
+    }
+
+    public int getTotal() {
+        int total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+}
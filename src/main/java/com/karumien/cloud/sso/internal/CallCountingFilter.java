@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+
+/**
+ * REST client filter which counts KeyCloak calls of current request, token endpoint calls are counted separately.
+ */
+public class CallCountingFilter implements ClientRequestFilter {
+
+    private static final String TOKEN_ENDPOINT = "/protocol/openid-connect/token";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void filter(ClientRequestContext requestContext) {
+        String path = requestContext.getUri().getPath();
+        CallCounter.count(path != null && path.endsWith(TOKEN_ENDPOINT) ? CallCounter.Type.TOKEN : CallCounter.Type.KEYCLOAK);
+    }
+}
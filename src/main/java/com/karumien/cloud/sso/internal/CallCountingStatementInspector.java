@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate statement inspector which counts JPA statements of current request (SQL is not changed).
+ */
+public class CallCountingStatementInspector implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String inspect(String sql) {
+        CallCounter.count(CallCounter.Type.JPA);
+        return sql;
+    }
+}
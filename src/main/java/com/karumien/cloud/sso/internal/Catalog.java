@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.Getter;
+
+/**
+ * Immutable read-mostly response body with its content version (strong ETag) and time of last change.
+ * <p>
+ * Catalogs are built once per snapshot of underlying data (and language), so conditional request can be answered
+ * without building of body.
+ */
+@Getter
+public final class Catalog<T> {
+
+    private final T body;
+
+    /** Quoted MD5 of JSON representation of body */
+    private final String etag;
+
+    /** Time of last change of underlying data in milliseconds */
+    private final long lastModified;
+
+    private Catalog(T body, String etag, long lastModified) {
+        this.body = body;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Create catalog, ETag is computed from JSON representation of body.
+     */
+    public static <T> Catalog<T> of(ObjectMapper mapper, T body, long lastModified) {
+        try {
+            return new Catalog<>(body, "\"" + DigestUtils.md5DigestAsHex(mapper.writeValueAsBytes(body)) + "\"", lastModified);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if <code>If-None-Match</code> header contains ETag of catalog (or <code>*</code>).
+     * Weak comparison is used as defined for <code>If-None-Match</code>.
+     */
+    public boolean isNotModified(String ifNoneMatch) {
+        return isNotModified(etag, ifNoneMatch);
+    }
+
+    /**
+     * Returns <code>true</code> if <code>If-None-Match</code> header contains ETag (or <code>*</code>).
+     * Weak comparison is used as defined for <code>If-None-Match</code>.
+     */
+    public static boolean isNotModified(String etag, String ifNoneMatch) {
+        if (!StringUtils.hasText(ifNoneMatch)) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
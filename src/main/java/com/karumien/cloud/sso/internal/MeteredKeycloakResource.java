@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import org.keycloak.admin.client.resource.RealmResource;
+import org.springframework.cloud.sleuth.Span;
+import org.springframework.cloud.sleuth.Tracer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Metered proxy of KeyCloak Admin REST resource.
+ * <p>
+ * Sub-resource locators (methods returning other resource, ie. {@code users().get(id)}) are proxied too, every other
+ * method is remote call and is timed as operation <code>resource.method</code> (ie. <code>user.toRepresentation</code>,
+ * <code>roleScope.listEffective</code>) with outcome and optionally traced by span.
+ */
+public final class MeteredKeycloakResource implements InvocationHandler {
+
+    public static final String METRIC_CALLS = "keycloak.admin.calls";
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_CLIENT_ERROR = "client_error";
+    public static final String OUTCOME_SERVER_ERROR = "server_error";
+    public static final String OUTCOME_ERROR = "error";
+
+    private static final Package RESOURCES = RealmResource.class.getPackage();
+
+    /** Operation names by method, resource name is interface name without Resource suffix */
+    private static final Map<Method, String> OPERATIONS = new ConcurrentHashMap<>();
+
+    private final Object target;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+
+    private MeteredKeycloakResource(Object target, MeterRegistry meterRegistry, Tracer tracer) {
+        this.target = target;
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Wrap resource to metered proxy.
+     *
+     * @param resource
+     *            KeyCloak resource
+     * @param type
+     *            resource interface
+     * @param meterRegistry
+     *            registry of timers
+     * @param tracer
+     *            tracer of spans, <code>null</code> without tracing
+     * @return metered resource
+     */
+    public static <T> T wrap(T resource, Class<T> type, MeterRegistry meterRegistry, Tracer tracer) {
+        if (resource == null || Proxy.isProxyClass(resource.getClass()) && Proxy.getInvocationHandler(resource) instanceof MeteredKeycloakResource) {
+            return resource;
+        }
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+            new MeteredKeycloakResource(resource, meterRegistry, tracer)));
+    }
+
+    /**
+     * Returns <code>true</code> if type is KeyCloak Admin REST resource.
+     */
+    public static boolean isResource(Class<?> type) {
+        return type.isInterface() && RESOURCES.equals(type.getPackage());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+        if (method.getDeclaringClass() == Object.class) {
+            return invoke(method, args);
+        }
+
+        if (isResource(method.getReturnType())) {
+            return wrap(invoke(method, args), (Class) method.getReturnType(), meterRegistry, tracer);
+        }
+
+        String operation = OPERATIONS.computeIfAbsent(method, MeteredKeycloakResource::operation);
+        Span span = tracer == null ? null : tracer.nextSpan().name("keycloak " + operation).start();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_ERROR;
+        try (Tracer.SpanInScope scope = span == null ? null : tracer.withSpan(span)) {
+            Object result = invoke(method, args);
+            outcome = result instanceof Response ? outcome(((Response) result).getStatus()) : OUTCOME_SUCCESS;
+            return result;
+        } catch (WebApplicationException e) {
+            outcome = e.getResponse() == null ? OUTCOME_ERROR : outcome(e.getResponse().getStatus());
+            error(span, e);
+            throw e;
+        } catch (Throwable e) {
+            error(span, e);
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC_CALLS)
+                .description("KeyCloak Admin REST calls")
+                .tags("operation", operation, "outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+            if (span != null) {
+                span.tag("outcome", outcome);
+                span.end();
+            }
+        }
+    }
+
+    private Object invoke(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void error(Span span, Throwable e) {
+        if (span != null) {
+            span.error(e);
+        }
+    }
+
+    private static String outcome(int status) {
+        if (status >= 500) {
+            return OUTCOME_SERVER_ERROR;
+        }
+        return status >= 400 ? OUTCOME_CLIENT_ERROR : OUTCOME_SUCCESS;
+    }
+
+    private static String operation(Method method) {
+        String resource = method.getDeclaringClass().getSimpleName();
+        if (resource.endsWith("Resource")) {
+            resource = resource.substring(0, resource.length() - "Resource".length());
+        }
+        return Character.toLowerCase(resource.charAt(0)) + resource.substring(1) + "." + method.getName();
+    }
+}
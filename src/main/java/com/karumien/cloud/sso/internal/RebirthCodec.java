@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.karumien.cloud.sso.api.model.OnBoardingInfo;
+
+/**
+ * Compact binary format of Rebirth skeleton: first byte is format version, rest is payload of the version.
+ * <p>
+ * Version 1 is Smile (binary JSON) compressed by Deflate. Thread safe.
+ */
+public final class RebirthCodec {
+
+    /** Smile + Deflate */
+    public static final byte VERSION_SMILE_DEFLATE = 1;
+
+    private final ObjectReader reader;
+
+    private final ObjectWriter writer;
+
+    public RebirthCodec() {
+        ObjectMapper smile = new ObjectMapper(new SmileFactory());
+        smile.findAndRegisterModules();
+        smile.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        smile.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        reader = smile.readerFor(OnBoardingInfo.class);
+        writer = smile.writerFor(OnBoardingInfo.class);
+    }
+
+    /**
+     * Encode skeleton in current version.
+     * 
+     * @param onboarding
+     *            {@link OnBoardingInfo} skeleton
+     * @return encoded payload
+     * @throws IOException
+     *             on serialization error
+     */
+    public byte[] encode(OnBoardingInfo onboarding) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(512);
+        output.write(VERSION_SMILE_DEFLATE);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream compressed = new DeflaterOutputStream(output, deflater)) {
+            writer.writeValue(compressed, onboarding);
+        } finally {
+            deflater.end();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Decode skeleton of any supported version.
+     * 
+     * @param payload
+     *            encoded payload
+     * @return {@link OnBoardingInfo} skeleton
+     * @throws IOException
+     *             on unsupported version or corrupted payload
+     */
+    public OnBoardingInfo decode(byte[] payload) throws IOException {
+        if (payload == null || payload.length == 0) {
+            throw new IOException("Empty rebirth payload");
+        }
+        if (payload[0] != VERSION_SMILE_DEFLATE) {
+            throw new IOException("Unsupported rebirth payload version " + payload[0]);
+        }
+        try (InputStream input = new InflaterInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1))) {
+            return reader.readValue(input);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.slf4j.MDC;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.karumien.cloud.sso.util.StackTraceUtils;
+
+import net.logstash.logback.marker.LogstashMarker;
+
+/**
+ * Fixed set of fields of one HTTP request written to request log.
+ * <p>
+ * Record is reused by request thread ({@link #current()}), fields are only referenced during request. Correlation
+ * fields (request identification) and result (status, duration, outbound calls) are put to MDC, other fields are copied
+ * once to immutable {@link #toMarker() marker} which is encoded to JSON later by (asynchronous) appender.
+ */
+public final class RequestLogRecord {
+
+    /** Request headers captured to request log */
+    public static final String[] HEADERS = { "x-locale", "x-real-ip", "x-request-id", "x-forwarded-for",
+        "x-original-forwarded-for", "x-trackingid", "user-agent" };
+
+    private static final String[] FIELDS = { "env", "method", "uri", "protocol", "content_type", "encoding", "authType",
+        "principal", "query", "client", "session", "user", "request", "response" };
+
+    private static final int ENV = 0;
+    private static final int METHOD = 1;
+    private static final int URI = 2;
+    private static final int PROTOCOL = 3;
+    private static final int CONTENT_TYPE = 4;
+    private static final int ENCODING = 5;
+    private static final int AUTH_TYPE = 6;
+    private static final int PRINCIPAL = 7;
+    private static final int QUERY = 8;
+    private static final int CLIENT = 9;
+    private static final int SESSION = 10;
+    private static final int USER = 11;
+    private static final int REQUEST = 12;
+    private static final int RESPONSE = 13;
+
+    private static final String[] NAMES = new String[FIELDS.length + HEADERS.length];
+
+    private static final String[] NUMBERS = new String[2 + CallCounter.Type.values().length];
+
+    private static final int STATUS = 0;
+    private static final int DURATION = 1;
+    private static final int CALLS = 2;
+
+    /** Fields put to MDC (not written by marker) */
+    private static final boolean[] CORRELATION = new boolean[NAMES.length];
+
+    /** Names of credential fields masked in payload */
+    private static final String CREDENTIAL_NAMES = "(?:password|newPassword|pin|client_secret|clientSecret"
+        + "|refresh_token|refreshToken|access_token|accessToken|id_token|token)";
+
+    /** Credential value in JSON (possibly truncated) or form payload */
+    private static final Pattern CREDENTIALS = Pattern.compile("(\"" + CREDENTIAL_NAMES
+        + "\"\\s*:\\s*)\"(?:[^\"\\\\]|\\\\.)*\"?|((?:^|&)" + CREDENTIAL_NAMES + "=)[^&]*",
+        Pattern.CASE_INSENSITIVE);
+
+    private static final String MASK = "***";
+
+    static {
+        System.arraycopy(FIELDS, 0, NAMES, 0, FIELDS.length);
+        System.arraycopy(HEADERS, 0, NAMES, FIELDS.length, HEADERS.length);
+        NUMBERS[STATUS] = "status";
+        NUMBERS[DURATION] = "duration_ms";
+        for (CallCounter.Type type : CallCounter.Type.values()) {
+            NUMBERS[CALLS + type.ordinal()] = "calls_" + type.name().toLowerCase();
+        }
+        CORRELATION[ENV] = true;
+        CORRELATION[METHOD] = true;
+        CORRELATION[URI] = true;
+        CORRELATION[FIELDS.length + Arrays.asList(HEADERS).indexOf("x-request-id")] = true;
+        CORRELATION[FIELDS.length + Arrays.asList(HEADERS).indexOf("x-trackingid")] = true;
+    }
+
+    private static final ThreadLocal<RequestLogRecord> CURRENT = ThreadLocal.withInitial(RequestLogRecord::new);
+
+    private final String[] values = new String[NAMES.length];
+
+    private final long[] numbers = new long[NUMBERS.length];
+
+    private long start;
+
+    /** Exception thrown by endpoint, stack trace is rendered only when request is logged */
+    private Throwable exception;
+
+    /**
+     * Returns (reused) record of current thread.
+     */
+    public static RequestLogRecord current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Clear record and capture request fields and headers, request start is recorded.
+     *
+     * @param request
+     *            HTTP request
+     * @param env
+     *            application environment
+     * @return this record
+     */
+    public RequestLogRecord capture(HttpServletRequest request, String env) {
+
+        clear();
+
+        values[ENV] = env;
+        values[METHOD] = request.getMethod();
+        values[URI] = request.getRequestURI();
+        values[PROTOCOL] = request.getProtocol();
+        values[CONTENT_TYPE] = request.getContentType();
+        values[ENCODING] = request.getCharacterEncoding();
+        values[AUTH_TYPE] = request.getAuthType();
+        Principal principal = request.getUserPrincipal();
+        values[PRINCIPAL] = principal == null ? null : principal.getName();
+        values[QUERY] = request.getQueryString();
+        values[CLIENT] = request.getRemoteAddr();
+        HttpSession session = request.getSession(false);
+        values[SESSION] = session == null ? null : session.getId();
+        values[USER] = request.getRemoteUser();
+
+        for (int i = 0; i < HEADERS.length; i++) {
+            values[FIELDS.length + i] = request.getHeader(HEADERS[i]);
+        }
+
+        start = System.nanoTime();
+        return this;
+    }
+
+    /**
+     * Complete record by response status, request duration and outbound calls.
+     *
+     * @param response
+     *            HTTP response
+     * @param counter
+     *            outbound calls of request, <code>null</code> when not counted
+     * @return this record
+     */
+    public RequestLogRecord complete(HttpServletResponse response, CallCounter counter) {
+        numbers[STATUS] = response.getStatus();
+        numbers[DURATION] = (System.nanoTime() - start) / 1_000_000;
+        if (counter != null) {
+            for (CallCounter.Type type : CallCounter.Type.values()) {
+                numbers[CALLS + type.ordinal()] = counter.get(type);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Put correlation fields (env, method, uri, x-request-id, x-trackingid) to MDC, so every log of request can be
+     * correlated.
+     *
+     * @return this record
+     */
+    public RequestLogRecord putCorrelation() {
+        for (int i = 0; i < values.length; i++) {
+            if (CORRELATION[i] && values[i] != null) {
+                MDC.put(NAMES[i], values[i]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Put result fields (status, duration_ms, calls_*) of completed record to MDC.
+     *
+     * @return this record
+     */
+    public RequestLogRecord putResult() {
+        for (int i = 0; i < numbers.length; i++) {
+            if (numbers[i] >= 0) {
+                MDC.put(NUMBERS[i], Long.toString(numbers[i]));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Reference exception thrown by endpoint, nothing is rendered until {@link #putException(int)}.
+     *
+     * @param exception
+     *            thrown exception
+     * @return this record
+     */
+    public RequestLogRecord exception(Throwable exception) {
+        this.exception = exception;
+        return this;
+    }
+
+    /**
+     * Put exception thrown by endpoint to MDC: truncated stack trace, or only exception summary when request completed
+     * with client error (4xx).
+     *
+     * @param maxLength
+     *            maximal length of stack trace
+     * @return this record
+     */
+    public RequestLogRecord putException(int maxLength) {
+        if (exception != null) {
+            boolean clientError = numbers[STATUS] >= 400 && numbers[STATUS] < 500;
+            MDC.put("exception", clientError ? exception.toString() : StackTraceUtils.truncated(exception, maxLength));
+        }
+        return this;
+    }
+
+    /**
+     * Set (truncated) request and response payload, credentials are masked.
+     */
+    public RequestLogRecord payload(String request, String response) {
+        values[REQUEST] = mask(request);
+        values[RESPONSE] = mask(response);
+        return this;
+    }
+
+    /**
+     * Mask values of credentials (password, PIN, secrets and tokens) in JSON or form payload.
+     */
+    public static String mask(String payload) {
+        if (payload == null || payload.isEmpty()) {
+            return payload;
+        }
+        return CREDENTIALS.matcher(payload).replaceAll(match -> match.group(1) != null
+            ? Matcher.quoteReplacement(match.group(1) + "\"" + MASK + "\"")
+            : Matcher.quoteReplacement(match.group(2) + MASK));
+    }
+
+    /**
+     * Clear record, no field of finished request is held by thread.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        Arrays.fill(numbers, -1);
+        exception = null;
+    }
+
+    public String getUri() {
+        return values[URI];
+    }
+
+    /**
+     * Returns immutable copy of record fields as marker for logging, only present fields not put to MDC are written.
+     */
+    public LogstashMarker toMarker() {
+        return new RequestLogMarker(values.clone());
+    }
+
+    private static final class RequestLogMarker extends LogstashMarker {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] values;
+
+        RequestLogMarker(String[] values) {
+            super("REQUEST_LOG");
+            this.values = values;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeTo(JsonGenerator generator) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (!CORRELATION[i] && values[i] != null) {
+                    generator.writeStringField(NAMES[i], values[i]);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "request-log";
+        }
+    }
+}
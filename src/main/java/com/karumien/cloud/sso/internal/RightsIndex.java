@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from 
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Bitset index of realm roles built from {@link RoleGraph}.
+ * <p>
+ * Every role has stable bit index (order by name), for each role are precomputed bits of all roles reachable by
+ * composites (including itself) and OR-ed binary mask of them. Binary mask attribute is string of <code>0</code> and
+ * <code>1</code>, character on position <i>i</i> is bit <i>i</i>.
+ */
+public final class RightsIndex {
+
+    private final String[] names;
+    private final Map<String, Integer> indexes;
+    private final BitSet[] closures;
+    private final BitSet[] masks;
+    private final BitSet roles;
+    private final int maskLength;
+
+    public RightsIndex(RoleGraph graph, Predicate<String> isRole) {
+
+        List<String> sorted = new ArrayList<>();
+        graph.getRoles().forEach(role -> sorted.add(role.getName()));
+        sorted.sort(null);
+
+        names = sorted.toArray(new String[0]);
+        indexes = new HashMap<>(names.length * 2);
+        roles = new BitSet(names.length);
+        for (int i = 0; i < names.length; i++) {
+            indexes.put(names[i], i);
+            if (isRole.test(names[i])) {
+                roles.set(i);
+            }
+        }
+
+        int length = 0;
+        BitSet[] ownMasks = new BitSet[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String mask = graph.findRole(names[i]).flatMap(RoleGraph.Role::getBinaryMask).orElse(null);
+            ownMasks[i] = parseMask(mask);
+            length = Math.max(length, mask == null ? 0 : mask.length());
+        }
+        maskLength = length;
+
+        closures = new BitSet[names.length];
+        masks = new BitSet[names.length];
+        for (int i = 0; i < names.length; i++) {
+            BitSet closure = new BitSet(names.length);
+            closure.set(i);
+            List<Integer> stack = new ArrayList<>();
+            stack.add(i);
+            while (!stack.isEmpty()) {
+                int current = stack.remove(stack.size() - 1);
+                for (String child : graph.findRole(names[current]).get().getComposites()) {
+                    Integer c = indexes.get(child);
+                    if (c != null && !closure.get(c)) {
+                        closure.set(c);
+                        stack.add(c);
+                    }
+                }
+            }
+            BitSet mask = new BitSet(maskLength);
+            for (int c = closure.nextSetBit(0); c >= 0; c = closure.nextSetBit(c + 1)) {
+                mask.or(ownMasks[c]);
+            }
+            closures[i] = closure;
+            masks[i] = mask;
+        }
+    }
+
+    /**
+     * Returns bit index of role or -1 for unknown role.
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns effective roles and rights bits of assigned roles (composites are expanded), unknown roles are ignored.
+     */
+    public BitSet getEffective(Collection<String> assigned) {
+        BitSet effective = new BitSet(names.length);
+        for (String name : assigned) {
+            Integer index = indexes.get(name);
+            if (index != null) {
+                effective.or(closures[index]);
+            }
+        }
+        return effective;
+    }
+
+    /**
+     * Returns names of roles (not rights) in bits, sorted by name.
+     */
+    public List<String> getRoles(BitSet effective) {
+        BitSet selected = (BitSet) effective.clone();
+        selected.and(roles);
+        return getNames(selected);
+    }
+
+    /**
+     * Returns names of rights in bits, sorted by name.
+     */
+    public List<String> getRights(BitSet effective) {
+        BitSet selected = (BitSet) effective.clone();
+        selected.andNot(roles);
+        return getNames(selected);
+    }
+
+    /**
+     * Returns names of all roles and rights in bits, sorted by name.
+     */
+    public List<String> getNames(BitSet bits) {
+        List<String> selected = new ArrayList<>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            selected.add(names[i]);
+        }
+        return selected;
+    }
+
+    /**
+     * Returns binary mask (OR of masks of effective roles) rendered as string of <code>0</code> and <code>1</code>,
+     * <code>null</code> when no role defines mask.
+     */
+    public String getBinaryMask(BitSet effective) {
+        if (maskLength == 0) {
+            return null;
+        }
+        BitSet mask = new BitSet(maskLength);
+        for (int i = effective.nextSetBit(0); i >= 0; i = effective.nextSetBit(i + 1)) {
+            mask.or(masks[i]);
+        }
+        if (mask.isEmpty()) {
+            return null;
+        }
+        char[] chars = new char[maskLength];
+        for (int i = 0; i < maskLength; i++) {
+            chars[i] = mask.get(i) ? '1' : '0';
+        }
+        return new String(chars);
+    }
+
+    private static BitSet parseMask(String mask) {
+        BitSet bits = new BitSet();
+        if (mask != null) {
+            for (int i = 0; i < mask.length(); i++) {
+                if (mask.charAt(i) == '1') {
+                    bits.set(i);
+                }
+            }
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from 
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.karumien.cloud.sso.service.RoleService;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Immutable snapshot of realm roles, their composites (role to right edges) and attributes.
+ * <p>
+ * Changes create new snapshot, translations and catalogs are memoized per language for lifetime of snapshot.
+ */
+public final class RoleGraph {
+
+    private final Map<String, Role> roles;
+
+    private final Map<String, Map<String, String>> translations = new ConcurrentHashMap<>();
+
+    private final Map<String, Catalog<?>> catalogs = new ConcurrentHashMap<>();
+
+    private final long created = System.currentTimeMillis();
+
+    private volatile RightsIndex rightsIndex;
+
+    public RoleGraph(Collection<Role> roles) {
+        Map<String, Role> byName = new LinkedHashMap<>();
+        roles.forEach(role -> byName.put(role.getName(), role));
+        this.roles = Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * Returns all realm roles (sorted as loaded).
+     */
+    public Collection<Role> getRoles() {
+        return roles.values();
+    }
+
+    public Optional<Role> findRole(String name) {
+        return Optional.ofNullable(roles.get(name));
+    }
+
+    /**
+     * Returns translations of role names for language, computed once per snapshot.
+     */
+    public Map<String, String> getTranslations(String language, Function<RoleGraph, Map<String, String>> translator) {
+        return translations.computeIfAbsent(language, l -> Collections.unmodifiableMap(translator.apply(this)));
+    }
+
+    /**
+     * Returns catalog (response body with ETag) by key, built once per snapshot.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Catalog<T> getCatalog(String key, Function<RoleGraph, Catalog<T>> builder) {
+        return (Catalog<T>) catalogs.computeIfAbsent(key, k -> builder.apply(this));
+    }
+
+    /**
+     * Returns time of creation of snapshot in milliseconds.
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Returns bitset index of roles, built once per snapshot.
+     */
+    public RightsIndex getRightsIndex(Predicate<String> isRole) {
+        RightsIndex index = rightsIndex;
+        if (index == null) {
+            index = new RightsIndex(this, isRole);
+            rightsIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns new snapshot with added or replaced role.
+     */
+    public RoleGraph with(Role role) {
+        Map<String, Role> changed = new LinkedHashMap<>(roles);
+        changed.put(role.getName(), role);
+        return new RoleGraph(changed.values());
+    }
+
+    /**
+     * Returns new snapshot without role (and without edges to it).
+     */
+    public RoleGraph without(String name) {
+        List<Role> changed = new ArrayList<>(roles.size());
+        for (Role role : roles.values()) {
+            if (!role.getName().equals(name)) {
+                changed.add(role.getComposites().contains(name) ? role.withoutComposite(name) : role);
+            }
+        }
+        return new RoleGraph(changed);
+    }
+
+    /**
+     * Snapshots are equal when contain same roles, edges and attributes.
+     */
+    public boolean isSame(RoleGraph other) {
+        return other != null && new ArrayList<>(roles.values()).equals(new ArrayList<>(other.roles.values()));
+    }
+
+    /**
+     * Realm role node.
+     */
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static final class Role {
+
+        private final String id;
+        private final String name;
+        private final String description;
+        private final Map<String, List<String>> attributes;
+        private final List<String> composites;
+
+        public Optional<String> getBinaryMask() {
+            List<String> values = attributes.get(RoleService.ATTR_BINARY_MASK);
+            return values == null || values.isEmpty() ? Optional.empty() : Optional.ofNullable(values.get(0));
+        }
+
+        private Role withoutComposite(String child) {
+            return new Role(id, name, description, attributes,
+                composites.stream().filter(c -> !c.equals(child)).collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Compiled table of i18n messages for all supported languages.
+ * <p>
+ * Every language has stable small id (order by language code), each message key has array of translations indexed
+ * by language id. Translations are resolved once when table is built, <code>null</code> means key has no
+ * translation in language. Attribute names with translation of entity (<code>translation[lang]</code>) are
+ * precomputed per language too.
+ */
+public final class TranslationTable {
+
+    private final String[] languages;
+    private final Map<String, Integer> ids;
+    private final String[] attributes;
+    private final Map<String, String[]> messages;
+
+    /**
+     * Build table of translations.
+     *
+     * @param languages
+     *            supported language codes
+     * @param keys
+     *            message keys
+     * @param attribute
+     *            name of entity attribute with translation, language is appended in brackets
+     * @param resolver
+     *            resolves translation of key in locale, <code>null</code> if not translated
+     */
+    public TranslationTable(Collection<String> languages, Collection<String> keys, String attribute,
+            BiFunction<String, Locale, String> resolver) {
+
+        List<String> sorted = new ArrayList<>(languages);
+        sorted.sort(null);
+
+        this.languages = sorted.toArray(new String[0]);
+        ids = new HashMap<>(this.languages.length * 2);
+        attributes = new String[this.languages.length];
+        Locale[] locales = new Locale[this.languages.length];
+        for (int i = 0; i < this.languages.length; i++) {
+            ids.put(this.languages[i], i);
+            attributes[i] = attribute + "[" + this.languages[i] + "]";
+            locales[i] = Locale.forLanguageTag(this.languages[i]);
+        }
+
+        messages = new HashMap<>(keys.size() * 2);
+        for (String key : keys) {
+            String[] translations = new String[this.languages.length];
+            for (int i = 0; i < translations.length; i++) {
+                translations[i] = resolver.apply(key, locales[i]);
+            }
+            messages.put(key, translations);
+        }
+    }
+
+    /**
+     * Returns id of language of locale or -1 for unsupported language.
+     */
+    public int idOf(Locale locale) {
+        Integer id = locale == null ? null : ids.get(locale.getLanguage());
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns language code of id.
+     */
+    public String getLanguage(int id) {
+        return languages[id];
+    }
+
+    /**
+     * Returns name of entity attribute with translation in language.
+     */
+    public String getAttribute(int id) {
+        return attributes[id];
+    }
+
+    /**
+     * Returns <code>true</code> if key is compiled in table.
+     */
+    public boolean contains(String key) {
+        return messages.containsKey(key);
+    }
+
+    /**
+     * Returns translation of key in language, <code>null</code> for unknown key or missing translation.
+     */
+    public String getMessage(String key, int id) {
+        String[] translations = messages.get(key);
+        return translations == null ? null : translations[id];
+    }
+}
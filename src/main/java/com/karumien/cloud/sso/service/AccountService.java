@@ -24,6 +24,7 @@ import com.karumien.cloud.sso.api.model.IdentityRoleInfo;
 import com.karumien.cloud.sso.api.model.IdentityState;
 import com.karumien.cloud.sso.api.model.ModuleInfo;
 import com.karumien.cloud.sso.api.model.RoleInfo;
+import com.karumien.cloud.sso.internal.Catalog;
 
 /**
  * Service provides scenarios for Account's management.
@@ -93,6 +94,15 @@ public interface AccountService {
      */
     List<ModuleInfo> getAccountHierarchy(String accountNumber);
 
+    /**
+     * Returns hierarchy in current locale with content version.
+     * 
+     * @param accountNumber
+     *            Account CRM ID
+     * @return {@link Catalog} of {@link ModuleInfo} with right groups definitions
+     */
+    Catalog<List<ModuleInfo>> getAccountHierarchyCatalog(String accountNumber);
+
     /**
      * Return roles for account (global and custom)
      * 
@@ -108,6 +118,17 @@ public interface AccountService {
 
     List<AccountInfo> search(Map<AccountPropertyType, String> searchFilter);
 
+    /**
+     * Search Accounts by all criteria in one query.
+     * 
+     * @param searchFilter
+     *            criteria, all of them must match
+     * @param pageRequest
+     *            paging and sorting
+     * @return {@link List} of {@link AccountInfo} on requested page
+     */
+    List<AccountInfo> search(Map<AccountPropertyType, String> searchFilter, Pageable pageRequest);
+
     default void putIfPresent(Map<AccountPropertyType, String> search, AccountPropertyType key, String value) {
         if (StringUtils.hasText(value)) {
             search.put(key, value);
@@ -25,13 +25,17 @@ import java.util.stream.Collectors;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import com.karumien.cloud.sso.CacheConfiguration;
 import com.karumien.cloud.sso.api.UpdateType;
 import com.karumien.cloud.sso.api.entity.AccountEntity;
 import com.karumien.cloud.sso.api.model.AccountInfo;
@@ -44,10 +48,12 @@ import com.karumien.cloud.sso.api.model.IdentityState;
 import com.karumien.cloud.sso.api.model.ModuleInfo;
 import com.karumien.cloud.sso.api.model.RoleInfo;
 import com.karumien.cloud.sso.api.repository.AccountEntityRepository;
+import com.karumien.cloud.sso.api.repository.AccountSearchSpecification;
 import com.karumien.cloud.sso.exceptions.AccountDeleteException;
 import com.karumien.cloud.sso.exceptions.AccountDuplicateException;
 import com.karumien.cloud.sso.exceptions.AccountNotFoundException;
 import com.karumien.cloud.sso.exceptions.IdentityNotFoundException;
+import com.karumien.cloud.sso.internal.Catalog;
 import com.karumien.cloud.sso.util.ValidationUtil;
 
 /**
@@ -108,6 +114,7 @@ public class AccountServiceImpl implements AccountService {
 	 */
 	@Override
 	@Transactional
+	@CacheEvict(cacheNames = CacheConfiguration.ACCOUNTS, key = "#accountNumber")
 	public AccountInfo updateAccount(String accountNumber, AccountInfo accountInfo, UpdateType update) {
 		AccountEntity accountEntity = findAccount(accountNumber)
 				.orElseThrow(() -> new AccountNotFoundException(accountNumber));
@@ -124,6 +131,7 @@ public class AccountServiceImpl implements AccountService {
 	 */
 	@Override
 	@Transactional(readOnly = true)
+	@Cacheable(cacheNames = CacheConfiguration.ACCOUNTS)
 	public AccountInfo getAccount(String accountNumber) {
 		return mapping(findAccount(accountNumber).orElseThrow(() -> new AccountNotFoundException(accountNumber)));
 	}
@@ -165,6 +173,7 @@ public class AccountServiceImpl implements AccountService {
 	 */
 	@Override
 	@Transactional
+	@CacheEvict(cacheNames = { CacheConfiguration.ACCOUNTS, CacheConfiguration.ACCOUNT_LOCALES }, key = "#accountNumber")
 	public void deleteAccount(String accountNumber) {
 		getAccount(accountNumber);
 
@@ -224,10 +233,11 @@ public class AccountServiceImpl implements AccountService {
 			userIds = searchService.findUserIdsByAttribute(IdentityPropertyType.ATTR_ACCOUNT_NUMBER, accountNumber,
 					driver);
 		} else {
-			userIds = contactNumbers
-					.stream().map(contactNumber -> searchService
-							.findUserIdsByAttribute(IdentityPropertyType.ATTR_CONTACT_NUMBER, contactNumber))
-					.flatMap(List::stream).collect(Collectors.toList());
+			Map<String, List<String>> contactUserIds = searchService
+					.findUserIdsByAttributeValues(IdentityPropertyType.ATTR_CONTACT_NUMBER, contactNumbers);
+			userIds = contactNumbers.stream()
+					.flatMap(contactNumber -> contactUserIds.getOrDefault(contactNumber, new ArrayList<>()).stream())
+					.collect(Collectors.toList());
 		}
 
 		return userIds;
@@ -245,16 +255,16 @@ public class AccountServiceImpl implements AccountService {
 	public List<IdentityInfo> getAccountIdentities(String accountNumber, String roleId, List<String> contactNumbers,
 			boolean extendedInfo, Boolean driver) {
 
-		return getAccountIdentitiesIds(accountNumber, contactNumbers, driver).stream()
-				// .filter(contactNumber -> driver == null || (driver.booleanValue() ==
-				// isDriverContactNumber(contactNumber)))
-				// TODO: DB representation
-				.map(identityId -> identityService.findUserRepresentationById(identityId)).filter(Optional::isPresent)
-				.map(Optional::get)
-//            .filter(u -> searchService.getSimpleAttribute(u.getAttributes(), IdentityService.ATTR_ACCOUNT_NUMBER).isPresent()
-//                 && searchService.getSimpleAttribute(u.getAttributes(), IdentityService.ATTR_ACCOUNT_NUMBER).get().equals(accountNumber))
-				.filter(u -> !StringUtils.hasText(roleId) || roleService.getIdentityRoles(u).contains(roleId))
-				.map(user -> identityService.mapping(user, extendedInfo)).collect(Collectors.toList());
+		List<UserRepresentation> identities = identityService
+				.findUserRepresentationsByIds(getAccountIdentitiesIds(accountNumber, contactNumbers, driver));
+
+		if (StringUtils.hasText(roleId)) {
+			Map<String, List<String>> identitiesRoles = roleService.getIdentitiesRoles(identities);
+			identities = identities.stream().filter(u -> identitiesRoles.get(u.getId()).contains(roleId))
+					.collect(Collectors.toList());
+		}
+
+		return identityService.mapping(identities, extendedInfo);
 	}
 
 	/**
@@ -309,15 +319,17 @@ public class AccountServiceImpl implements AccountService {
 
 		List<IdentityRoleInfo> roles = new ArrayList<>();
 
-		List<UserRepresentation> identities = getAccountIdentitiesIds(accountNumber, contactNumbers).stream()
-				.map(identityId -> identityService.findUserRepresentationById(identityId)).filter(Optional::isPresent)
-				.map(Optional::get)
+		List<UserRepresentation> identities = identityService
+				.findUserRepresentationsByIds(getAccountIdentitiesIds(accountNumber, contactNumbers)).stream()
 				.filter(u -> searchService.getSimpleAttribute(u.getAttributes(), IdentityService.ATTR_ACCOUNT_NUMBER)
 						.isPresent()
 						&& searchService.getSimpleAttribute(u.getAttributes(), IdentityService.ATTR_ACCOUNT_NUMBER)
 								.get().equals(accountNumber))
 				.collect(Collectors.toList());
 
+		Map<String, IdentityState> identitiesStates = identityService.mappingIdentityStates(identities);
+		Map<String, List<String>> identitiesRoles = roleService.getIdentitiesRoles(identities);
+
 		for (UserRepresentation userRepresentation : identities) {
 
 			IdentityRoleInfo role = new IdentityRoleInfo();
@@ -332,9 +344,9 @@ public class AccountServiceImpl implements AccountService {
 				role.setLocked(true);
 			}
 
-			role.setState(identityService.mappingIdentityState(userRepresentation));
+			role.setState(identitiesStates.get(userRepresentation.getId()));
 
-			role.setRoles(roleService.getIdentityRoles(userRepresentation).stream()
+			role.setRoles(identitiesRoles.get(userRepresentation.getId()).stream()
 					.filter(k -> accountRoles.contains(k)).collect(Collectors.toList()));
 
 			roles.add(role);
@@ -347,40 +359,17 @@ public class AccountServiceImpl implements AccountService {
 	 */
 	@Override
 	public List<AccountInfo> search(Map<AccountPropertyType, String> searchFilter) {
-
-		List<AccountInfo> found = new ArrayList<>();
-
-		AccountPropertyType firstKey = searchFilter.keySet().stream().findFirst().get();
-		found = mappingIds(searchService.findAccountIdsByAttribute(firstKey, searchFilter.remove(firstKey)));
-
-		// filter other
-		for (AccountPropertyType key : searchFilter.keySet()) {
-			found = found.stream().filter(i -> hasProperty(i, key, searchFilter.get(key))).collect(Collectors.toList());
-		}
-
-		return found;
-	}
-
-	private boolean hasProperty(AccountInfo a, AccountPropertyType key, String value) {
-		switch (key) {
-		case ATTR_ACCOUNT_NAME:
-			return value.equals(a.getName());
-		case ATTR_CONTACT_EMAIL:
-			return value.toLowerCase().equals(a.getContactEmail());
-		case ATTR_COMP_REG_NO:
-			return value.equals(a.getCompRegNo());
-		case ATTR_ACCOUNT_NUMBER:
-			return value.equals(a.getAccountNumber());
-		case ATTR_NOTE:
-			return value.equals(a.getNote());
-		default:
-			return false;
-		}
+		return search(searchFilter, PageRequest.of(0, Integer.MAX_VALUE));
 	}
 
-	private List<AccountInfo> mappingIds(List<String> accountIds) {
-		return accountIds.stream().map(accountNumber -> findAccount(accountNumber)).filter(Optional::isPresent)
-				.map(Optional::get).map(accountEntity -> mapping(accountEntity)).collect(Collectors.toList());
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<AccountInfo> search(Map<AccountPropertyType, String> searchFilter, Pageable pageRequest) {
+		return accountEntityRepository.findAll(new AccountSearchSpecification(searchFilter), pageRequest).stream()
+				.map(accountEntity -> mapping(accountEntity)).collect(Collectors.toList());
 	}
 
 	/**
@@ -401,11 +390,20 @@ public class AccountServiceImpl implements AccountService {
 		return groupService.getAccountHierarchy(accountNumber, LocaleContextHolder.getLocale());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Catalog<List<ModuleInfo>> getAccountHierarchyCatalog(String accountNumber) {
+		return groupService.getHierarchyCatalog(LocaleContextHolder.getLocale());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	@Transactional(readOnly = true)
+	@Cacheable(cacheNames = CacheConfiguration.ACCOUNT_LOCALES)
 	public List<String> getAccountIdentitiesLocales(String accountNumber) {
 		return accountEntityRepository.getLocales(accountNumber);
 	}
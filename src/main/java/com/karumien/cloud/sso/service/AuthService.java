@@ -8,8 +8,10 @@ package com.karumien.cloud.sso.service;
 
 import com.karumien.cloud.sso.api.model.AuthorizationResponse;
 import com.karumien.cloud.sso.api.model.IdentityInfo;
+import com.karumien.cloud.sso.api.model.IntrospectionResponse;
 import com.karumien.cloud.sso.api.model.PasswordPolicy;
 import com.karumien.cloud.sso.api.model.UsernamePolicy;
+import com.karumien.cloud.sso.internal.Catalog;
 
 /**
  * Service provides scenatios for authentication's tokens management.
@@ -33,6 +35,13 @@ public interface AuthService {
      */
     PasswordPolicy getPasswordPolicy();
 
+    /**
+     * Returns Password Policy translated by current locale with content version, rebuilt when policy changes.
+     * 
+     * @return {@link Catalog} of {@link PasswordPolicy}
+     */
+    Catalog<PasswordPolicy> getPasswordPolicyCatalog();
+
     /**
      * Logout user by token.
      * 
@@ -55,5 +64,23 @@ public interface AuthService {
 
     UsernamePolicy getUsernamePolicy();
 
+    /**
+     * Returns Username Policy translated by current locale with content version.
+     * 
+     * @return {@link Catalog} of {@link UsernamePolicy}
+     */
+    Catalog<UsernamePolicy> getUsernamePolicyCatalog();
+
+    /**
+     * Verify access token locally by cached realm keys (signature, expiry, audience and realm).
+     * 
+     * @param token
+     *            access token representation
+     * @param audience
+     *            required audience (default audience is used when empty)
+     * @return {@link IntrospectionResponse} claims and identity's roles, inactive token when verification fails
+     */
+    IntrospectionResponse introspect(String token, String audience);
+
 
 }
@@ -6,25 +6,36 @@
  */
 package com.karumien.cloud.sso.service;
 
-import java.net.URL;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
-import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.keycloak.OAuth2Constants;
+import org.keycloak.TokenVerifier;
 import org.keycloak.admin.client.Keycloak;
-import org.keycloak.admin.client.KeycloakBuilder;
-import org.keycloak.admin.client.token.TokenManager;
+import org.keycloak.common.VerificationException;
+import org.keycloak.jose.jws.JWSInput;
+import org.keycloak.jose.jws.JWSInputException;
+import org.keycloak.representations.AccessToken;
 import org.keycloak.representations.AccessTokenResponse;
 import org.keycloak.representations.idm.UserRepresentation;
+import org.keycloak.util.TokenUtil;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -35,8 +46,8 @@ import org.springframework.util.StringUtils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.karumien.cloud.sso.api.model.AuthorizationResponse;
-import com.karumien.cloud.sso.api.model.GrantType;
 import com.karumien.cloud.sso.api.model.IdentityInfo;
+import com.karumien.cloud.sso.api.model.IntrospectionResponse;
 import com.karumien.cloud.sso.api.model.PasswordPolicy;
 import com.karumien.cloud.sso.api.model.UsernamePolicy;
 import com.karumien.cloud.sso.exceptions.AttributeNotFoundException;
@@ -44,6 +55,10 @@ import com.karumien.cloud.sso.exceptions.IdentityNotFoundException;
 import com.karumien.cloud.sso.exceptions.InvalidPinException;
 import com.karumien.cloud.sso.internal.AdvancedTokenConfig;
 import com.karumien.cloud.sso.internal.AdvancedTokenManager;
+import com.karumien.cloud.sso.internal.Catalog;
+import com.karumien.cloud.sso.util.ValidationUtil;
+
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Implementation of {@link AuthService} for authentication tokens management.
@@ -51,6 +66,7 @@ import com.karumien.cloud.sso.internal.AdvancedTokenManager;
  * @author <a href="viliam.litavec@karumien.com">Viliam Litavec</a>
  * @since 1.0, 13. 8. 2019 22:07:27
  */
+@Slf4j
 @Service
 public class AuthServiceImpl implements AuthService {
 
@@ -63,9 +79,24 @@ public class AuthServiceImpl implements AuthService {
     @Value("${keycloak.client-id}")
     private String clientId;
 
+    @Value("${keycloak.introspection.issuer:${keycloak.auth-server-url}/realms/${keycloak.realm}}")
+    private String issuer;
+
+    @Value("${keycloak.introspection.audience:}")
+    private String audience;
+
+    @Value("${keycloak.password-policy.ttl:300}")
+    private long passwordPolicyTtl;
+
     @Autowired
     protected Keycloak keycloak;
 
+    @Autowired
+    private AdvancedTokenManager tokenManager;
+
+    @Autowired
+    private RealmKeyService realmKeyService;
+
     @Autowired
     private MessageSource messageSource;
     
@@ -78,6 +109,21 @@ public class AuthServiceImpl implements AuthService {
     @Autowired
     private SearchService searchService;
 
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    private volatile PasswordPolicySnapshot passwordPolicySnapshot;
+
+    private final Lock passwordPolicyLock = new ReentrantLock();
+
+    /** Username policy is fixed, translated catalogs by language */
+    private final Map<String, Catalog<UsernamePolicy>> usernamePolicyCatalogs = new ConcurrentHashMap<>();
+
+    private final long started = System.currentTimeMillis();
+
     protected AuthorizationResponse mapping(AccessTokenResponse token) {
         
         AuthorizationResponse auth = new AuthorizationResponse();
@@ -104,39 +150,9 @@ public class AuthServiceImpl implements AuthService {
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public String getPublicKey() {
-
-        // List<KeyMetadataRepresentation> keys = keycloak.realm(REALM).get keys().getKeyMetadata().getKeys();
-        //
-        // String publicKeyString = null;
-        // for (KeyMetadataRepresentation key : keys) {
-        // if (key.getKid().equals(jwsHeader.getKeyId())) {
-        // publicKeyString = key.getPublicKey();
-        // break;
-        // }
-        // }
-
-        //
-        // RealmResource realmResource = keycloak.realm(realm);
-        // KeyResource keys = realmResource.keys();
-        // keys.getKeyMetadata().getKeys().forEach(key -> System.out.println(key.getAlgorithm()));
-        // keys.getKeyMetadata().getKeys().forEach(key -> System.out.println(key.getCertificate()));
-        // keys.getKeyMetadata().getKeys().forEach(key -> System.out.println(key.getKid()));
-        // keys.getKeyMetadata().getKeys().forEach(key -> System.out.println(key.getProviderId()));
-        // keys.getKeyMetadata().getKeys().forEach(key -> System.out.println(key.getPublicKey()));
-        // keys.getKeyMetadata().getKeys().forEach(key -> System.out.println(key.getStatus()));
-        // keys.getKeyMetadata().getKeys().forEach(key -> System.out.println(key.getType()));
-
-        ObjectMapper om = new ObjectMapper();
-        Map<String, Object> realmInfo;
-        try {
-            realmInfo = om.readValue(new URL(adminServerUrl + "/realms/" + realm).openStream(), Map.class);
-            return (String) realmInfo.get("public_key");
-        } catch (Exception e) {
-            throw new IllegalStateException("Can't retreive public key", e);
-        }
+        return realmKeyService.getPublicKey();
     }
 
     /**
@@ -156,12 +172,8 @@ public class AuthServiceImpl implements AuthService {
         MDC.put("clientId", client);
         MDC.put("usr", username);
         
-        TokenManager tokenManager = KeycloakBuilder.builder().serverUrl(adminServerUrl).realm(realm)
-            .clientId(client).clientSecret(clientSecret)
-            .username(username).password(password).grantType(GrantType.PASSWORD.toString())           
-            .build().tokenManager();
-            
-        return mapping(tokenManager.getAccessToken());            
+        return mapping(tokenManager.grantToken(
+                new AdvancedTokenConfig(adminServerUrl, realm, username, password, client, clientSecret, OAuth2Constants.PASSWORD), null));            
     }
     
     /**
@@ -171,11 +183,8 @@ public class AuthServiceImpl implements AuthService {
     public AuthorizationResponse loginByClientCredentials(String clientId, String clientSecret) {
         MDC.put("clientId", clientId);
 
-        TokenManager tokenManager = KeycloakBuilder.builder().serverUrl(adminServerUrl)
-            .realm(realm).clientId(clientId).clientSecret(clientSecret).grantType(GrantType.CLIENT_CREDENTIALS.toString())
-            .build().tokenManager();
-
-        return mapping(tokenManager.getAccessToken());            
+        return mapping(tokenManager.grantToken(
+                new AdvancedTokenConfig(adminServerUrl, realm, null, null, clientId, clientSecret, OAuth2Constants.CLIENT_CREDENTIALS), null));            
     }
 
     /**
@@ -186,13 +195,8 @@ public class AuthServiceImpl implements AuthService {
         String client = StringUtils.hasText(clientId) ? clientId : this.clientId;
         MDC.put("clientId", client);
 
-        ResteasyClientBuilder clientBuilder = new ResteasyClientBuilder().connectionPoolSize(10);
-
-        AdvancedTokenManager tokenManager = new AdvancedTokenManager(
-                new AdvancedTokenConfig(this.adminServerUrl, realm, null, null, client, clientSecrect, OAuth2Constants.REFRESH_TOKEN),
-                clientBuilder.build(), refreshToken);
-        
-        return mapping(tokenManager.getAccessToken());            
+        return mapping(tokenManager.grantToken(
+                new AdvancedTokenConfig(this.adminServerUrl, realm, null, null, client, clientSecrect, OAuth2Constants.REFRESH_TOKEN), refreshToken));            
     }
     
     /**
@@ -214,7 +218,9 @@ public class AuthServiceImpl implements AuthService {
         
         if (pin.equalsIgnoreCase(pinStored)) {
             IdentityInfo identityInfo = identityService.mapping(user, false);
-            identityInfo.setBinaryRights(searchService.getSimpleAttribute(user.getAttributes(), IdentityService.ATTR_BINARY_RIGHTS).orElse(null));        	
+            // explicit binary rights of identity, otherwise mask of its roles
+            identityInfo.setBinaryRights(searchService.getSimpleAttribute(user.getAttributes(), IdentityService.ATTR_BINARY_RIGHTS)
+                .orElseGet(() -> roleService.getIdentityBinaryMask(user)));
             return identityInfo;
         } 
         
@@ -241,46 +247,171 @@ public class AuthServiceImpl implements AuthService {
         
         return policy;
     }    
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Catalog<UsernamePolicy> getUsernamePolicyCatalog() {
+        return usernamePolicyCatalogs.computeIfAbsent(LocaleContextHolder.getLocale().getLanguage(),
+            language -> Catalog.of(mapper, getUsernamePolicy(), started));
+    }
     
     /**
      * {@inheritDoc}
      */
     @Override
     public PasswordPolicy getPasswordPolicy() {
+        return getPasswordPolicy(getPasswordPolicySnapshot(), LocaleContextHolder.getLocale());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Catalog<PasswordPolicy> getPasswordPolicyCatalog() {
+        PasswordPolicySnapshot snapshot = getPasswordPolicySnapshot();
+        Locale locale = LocaleContextHolder.getLocale();
+        return snapshot.catalogs.computeIfAbsent(locale.getLanguage(),
+            language -> Catalog.of(mapper, getPasswordPolicy(snapshot, locale), snapshot.modified));
+    }
+
+    private PasswordPolicy getPasswordPolicy(PasswordPolicySnapshot snapshot, Locale locale) {
+        PasswordPolicy policy = copy(snapshot.policy);
+        policy.setTranslation(snapshot.translations.computeIfAbsent(locale.getLanguage(), language -> getPolicyTranslation(locale, snapshot.policy)));
+        return policy;
+    }
+
+    private PasswordPolicySnapshot getPasswordPolicySnapshot() {
+
+        PasswordPolicySnapshot snapshot = passwordPolicySnapshot;
+        long now = System.currentTimeMillis();
+        if (snapshot != null && now < snapshot.expires) {
+            return snapshot;
+        }
+
+        // one thread reloads, others use previous policy meanwhile
+        if (snapshot != null && !passwordPolicyLock.tryLock()) {
+            return snapshot;
+        }
+        if (snapshot == null) {
+            passwordPolicyLock.lock();
+        }
+
+        try {
+            snapshot = passwordPolicySnapshot;
+            if (snapshot != null && now < snapshot.expires) {
+                return snapshot;
+            }
+
+            String policyDescription;
+            try {
+                policyDescription = keycloak.realm(realm).toRepresentation().getPasswordPolicy();
+            } catch (RuntimeException e) {
+                if (snapshot == null) {
+                    throw e;
+                }
+                log.warn("Can't reload password policy, using previous one: {}", e.getMessage());
+                policyDescription = snapshot.policy.getValue();
+            }
+
+            long expires = now + TimeUnit.SECONDS.toMillis(passwordPolicyTtl);
+            if (snapshot != null && Objects.equals(policyDescription, snapshot.policy.getValue())) {
+                snapshot = new PasswordPolicySnapshot(snapshot.policy, snapshot.translations, snapshot.catalogs, snapshot.modified, expires);
+            } else {
+                PasswordPolicy policy = parsePasswordPolicy(policyDescription);
+                Map<String, String> translations = new ConcurrentHashMap<>();
+                for (String language : ValidationUtil.SUPPORTED_LOCALES) {
+                    translations.put(language, getPolicyTranslation(new Locale(language), policy));
+                }
+                snapshot = new PasswordPolicySnapshot(policy, translations, new ConcurrentHashMap<>(), now, expires);
+            }
+
+            passwordPolicySnapshot = snapshot;
+            return snapshot;
+
+        } finally {
+            passwordPolicyLock.unlock();
+        }
+    }
 
-        String policyDescription = keycloak.realm(realm).toRepresentation().getPasswordPolicy();
+    protected static PasswordPolicy parsePasswordPolicy(String policyDescription) {
+
+        Map<String, String> options = parsePolicyOptions(policyDescription);
 
         PasswordPolicy policy = new PasswordPolicy();
         policy.setValue(policyDescription);
-        policy.setHashAlgorithm(extract("hashAlgorithm", policyDescription, String.class));
-        policy.setMinSpecialChars(extract("specialChars", policyDescription, Integer.class));
-        policy.setMinUpperCase(extract("upperCase", policyDescription, Integer.class));
-        policy.setMinLowerCase(extract("lowerCase", policyDescription, Integer.class));
-        policy.setPasswordHistory(extract("passwordHistory", policyDescription, Integer.class));
-        policy.setMinDigits(extract("digits", policyDescription, Integer.class));
-        policy.setHashIterations(extract("hashIterations", policyDescription, Integer.class));
-
-        if (extract("passwordBlacklist", policyDescription, String.class) != null) {
+        policy.setHashAlgorithm(options.get("hashAlgorithm"));
+        policy.setMinSpecialChars(toInteger(options.get("specialChars")));
+        policy.setMinUpperCase(toInteger(options.get("upperCase")));
+        policy.setMinLowerCase(toInteger(options.get("lowerCase")));
+        policy.setPasswordHistory(toInteger(options.get("passwordHistory")));
+        policy.setMinDigits(toInteger(options.get("digits")));
+        policy.setHashIterations(toInteger(options.get("hashIterations")));
+
+        if (options.containsKey("passwordBlacklist")) {
             policy.setPasswordBlacklist(true);
         }
 
-        if (extract("notUsername", policyDescription, String.class) != null) {
+        if (options.containsKey("notUsername")) {
             policy.setNotUseUsername(true);
         }
 
-        policy.setRegexPattern(extract("regexPattern", policyDescription, String.class));
-        policy.setPasswordExpireDays(extract("forceExpiredPasswordChange", policyDescription, Integer.class));
-        policy.setMinLength(extract("length", policyDescription, Integer.class));
-        
+        policy.setRegexPattern(options.get("regexPattern"));
+        policy.setPasswordExpireDays(toInteger(options.get("forceExpiredPasswordChange")));
+        policy.setMinLength(toInteger(options.get("length")));
+
         if (policy.getMinLength() == null || policy.getMinLength() == 0) {
             policy.setMinLength(1);
         }
-        
-        policy.setTranslation(getPolicyTranslation(LocaleContextHolder.getLocale(), policy));
 
         return policy;
     }
 
+    /**
+     * Split KeyCloak policy description, ie. <code>length(8) and digits(1) and notUsername(undefined)</code>.
+     */
+    private static Map<String, String> parsePolicyOptions(String policyDescription) {
+
+        Map<String, String> options = new HashMap<>();
+        if (!StringUtils.hasText(policyDescription)) {
+            return options;
+        }
+
+        for (String option : policyDescription.split(" and ")) {
+            int start = option.indexOf('(');
+            int end = option.lastIndexOf(')');
+            if (start > 0 && end > start) {
+                options.put(option.substring(0, start).trim(), option.substring(start + 1, end));
+            } else if (StringUtils.hasText(option)) {
+                options.put(option.trim(), null);
+            }
+        }
+
+        return options;
+    }
+
+    private static Integer toInteger(String value) {
+        return value == null ? null : Integer.valueOf(value.trim());
+    }
+
+    private static PasswordPolicy copy(PasswordPolicy policy) {
+        return new PasswordPolicy()
+            .value(policy.getValue())
+            .hashAlgorithm(policy.getHashAlgorithm())
+            .hashIterations(policy.getHashIterations())
+            .minSpecialChars(policy.getMinSpecialChars())
+            .minUpperCase(policy.getMinUpperCase())
+            .minLowerCase(policy.getMinLowerCase())
+            .minDigits(policy.getMinDigits())
+            .minLength(policy.getMinLength())
+            .passwordHistory(policy.getPasswordHistory())
+            .passwordBlacklist(policy.isPasswordBlacklist())
+            .notUseUsername(policy.isNotUseUsername())
+            .regexPattern(policy.getRegexPattern())
+            .passwordExpireDays(policy.getPasswordExpireDays());
+    }
+
     private String getPolicyTranslation(Locale locale, PasswordPolicy policy) {
 
         List<String> texts = new ArrayList<>();
@@ -364,23 +495,6 @@ public class AuthServiceImpl implements AuthService {
     }
 
 
-    @SuppressWarnings("unchecked")
-    private <T> T extract(String code, String policyDescription, Class<T> clazz) {
-
-        if (policyDescription == null || !policyDescription.contains(code)) {
-            return null;
-        }
-
-        String extractedValue = policyDescription.substring(policyDescription.indexOf(code) + code.length() + 1);
-        extractedValue = extractedValue.substring(0, extractedValue.indexOf(")"));
-
-        if (Integer.class.equals(clazz)) {
-            return (T) Integer.valueOf(extractedValue);
-        }
-
-        return (T) extractedValue;
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -391,14 +505,11 @@ public class AuthServiceImpl implements AuthService {
         MDC.put("clientId", client);
         MDC.put("usr", username);
 
-        ResteasyClientBuilder clientBuilder = new ResteasyClientBuilder().connectionPoolSize(10);
 //        UserRepresentation identity = identityService.findIdentityByUsername(username).orElseThrow(() -> new IdentityNotFoundException("username " + username));
         
-        AdvancedTokenManager tokenManager = new AdvancedTokenManager(
+        return mapping(tokenManager.grantToken(
                 new AdvancedTokenConfig(this.adminServerUrl, realm, username, null, client, StringUtils.hasText(clientId) ? clientSecret : null, 
-                                OAuth2Constants.TOKEN_EXCHANGE_GRANT_TYPE), clientBuilder.build(), refreshToken);
-
-        return mapping(tokenManager.getAccessToken());            
+                                OAuth2Constants.TOKEN_EXCHANGE_GRANT_TYPE), refreshToken));            
     }
 
     /**
@@ -409,4 +520,89 @@ public class AuthServiceImpl implements AuthService {
         return passwordGeneratorService.generate(getPasswordPolicy());
     }
 
-}
\ No newline at end of file
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public IntrospectionResponse introspect(String token, String audience) {
+
+        IntrospectionResponse response = new IntrospectionResponse().active(false);
+
+        try {
+            // default checks without RealmUrlCheck.NULL_INSTANCE (fails as realm URL is not set)
+            TokenVerifier<AccessToken> verifier = TokenVerifier.create(token, AccessToken.class)
+                .withChecks(new TokenVerifier.RealmUrlCheck(issuer), TokenVerifier.SUBJECT_EXISTS_CHECK,
+                    new TokenVerifier.TokenTypeCheck(TokenUtil.TOKEN_TYPE_BEARER), TokenVerifier.IS_ACTIVE);
+
+            String requiredAudience = StringUtils.hasText(audience) ? audience : this.audience;
+            if (StringUtils.hasText(requiredAudience)) {
+                verifier.audience(requiredAudience);
+            }
+
+            String kid = verifier.getHeader().getKeyId();
+            PublicKey publicKey = kid != null ? realmKeyService.getPublicKey(kid).orElse(null) : toPublicKey(realmKeyService.getPublicKey());
+            if (publicKey == null) {
+                log.info("Introspection failed: unknown key {}", kid);
+                return response;
+            }
+
+            AccessToken accessToken = verifier.publicKey(publicKey).verify().getToken();
+
+            response.active(true)
+                .sub(accessToken.getSubject())
+                .username(accessToken.getPreferredUsername())
+                .clientId(accessToken.getIssuedFor())
+                .iss(accessToken.getIssuer())
+                .aud(accessToken.getAudience() == null ? null : Arrays.asList(accessToken.getAudience()))
+                .scope(accessToken.getScope())
+                .exp(accessToken.getExp() == null ? null : accessToken.getExp().longValue())
+                .iat(accessToken.getIat() == null ? null : accessToken.getIat().longValue())
+                .claims(new JWSInput(token).readJsonContent(Map.class));
+
+            Set<String> realmRoles = getIdentityRoles(accessToken);
+            if (realmRoles != null) {
+                response.roles(realmRoles.stream().filter(roleService::isRole).sorted().collect(Collectors.toList()))
+                    .rights(realmRoles.stream().filter(r -> !roleService.isRole(r)).sorted().collect(Collectors.toList()));
+            }
+
+        } catch (VerificationException | JWSInputException e) {
+            log.info("Introspection failed: {}", e.getMessage());
+        }
+
+        return response;
+    }
+
+    /**
+     * Returns roles of token (realm_access) expanded by composites of in-memory role graph, no KeyCloak or database call
+     * is made on introspection.
+     */
+    private Set<String> getIdentityRoles(AccessToken accessToken) {
+        if (accessToken.getRealmAccess() == null || accessToken.getRealmAccess().getRoles() == null) {
+            return null;
+        }
+        return roleService.expandRoles(accessToken.getRealmAccess().getRoles());
+    }
+
+    /**
+     * Parsed password policy with translations by language.
+     */
+    private static final class PasswordPolicySnapshot {
+
+        private final PasswordPolicy policy;
+        private final Map<String, String> translations;
+        private final Map<String, Catalog<PasswordPolicy>> catalogs;
+        private final long modified;
+        private final long expires;
+
+        private PasswordPolicySnapshot(PasswordPolicy policy, Map<String, String> translations,
+                Map<String, Catalog<PasswordPolicy>> catalogs, long modified, long expires) {
+            this.policy = policy;
+            this.translations = translations;
+            this.catalogs = catalogs;
+            this.modified = modified;
+            this.expires = expires;
+        }
+    }
+
+}
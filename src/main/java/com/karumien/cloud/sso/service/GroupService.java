@@ -14,6 +14,7 @@ import org.keycloak.representations.idm.RoleRepresentation;
 import com.karumien.cloud.sso.api.model.AccountPropertyType;
 import com.karumien.cloud.sso.api.model.ModuleInfo;
 import com.karumien.cloud.sso.api.model.RoleInfo;
+import com.karumien.cloud.sso.internal.Catalog;
 
 /**
  * Service provides scenarios for Account's management.
@@ -37,10 +38,26 @@ public interface GroupService {
      * 
      * @param accountNumber
      *            Account CRM ID
-     * @return {@link List} of {@link ModuleInfo} with right groups definitions
+     * @param locale
+     *            {@link Locale} of translations
+     * @return {@link List} of {@link ModuleInfo} with right groups definitions (precomputed, unmodifiable)
      */
     List<ModuleInfo> getAccountHierarchy(String accountNumber, Locale locale);
 
+    /**
+     * Returns precomputed hierarchy in locale with content version.
+     * 
+     * @param locale
+     *            {@link Locale} of translations
+     * @return {@link Catalog} of {@link ModuleInfo} hierarchy
+     */
+    Catalog<List<ModuleInfo>> getHierarchyCatalog(Locale locale);
+
+    /**
+     * Rebuild precomputed hierarchy when modules definition has changed (if reload is enabled).
+     */
+    void reloadHierarchy();
+
     List<RoleInfo> getAccountRoles(String accountNumber);
 
     List<RoleRepresentation> getAccountRolesRepresentation(String accountNumber);
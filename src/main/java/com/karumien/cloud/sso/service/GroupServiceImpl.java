@@ -15,24 +15,34 @@ package com.karumien.cloud.sso.service;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
+
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karumien.cloud.sso.CacheConfiguration;
 import com.karumien.cloud.sso.api.dto.GroupInfo;
 import com.karumien.cloud.sso.api.model.ModuleInfo;
 import com.karumien.cloud.sso.api.model.RightGroup;
 import com.karumien.cloud.sso.api.model.RoleInfo;
+import com.karumien.cloud.sso.internal.Catalog;
+import com.karumien.cloud.sso.util.ValidationUtil;
+
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Implementation {@link AccountService} for Account Management.
@@ -41,6 +51,7 @@ import com.karumien.cloud.sso.api.model.RoleInfo;
  * @since 1.0, 22. 8. 2019 18:59:57
  */
 @Service
+@Slf4j
 public class GroupServiceImpl implements GroupService {
 
 	@Value("${keycloak.realm}")
@@ -61,34 +72,114 @@ public class GroupServiceImpl implements GroupService {
 	@Autowired
 	private ObjectMapper mapper;
 	
-	@Value("classpath:json/modules.json")
+	@Value("${hierarchy.modules:classpath:json/modules.json}")
 	private Resource modulesResource;
 
+	@Value("${hierarchy.reload:false}")
+	private boolean reload;
+
+	private volatile HierarchySnapshot hierarchy;
+
+	/**
+	 * Translated hierarchy of all supported locales, built from one read of modules definition.
+	 */
+	private static final class HierarchySnapshot {
+
+		private final List<GroupInfo> modules;
+
+		/** Modification time of definition (0 if unknown) */
+		private final long lastModified;
+
+		/** Time of change used by catalogs */
+		private final long modified;
+
+		/** Translated hierarchy with ETag, key locale */
+		private final Map<String, Catalog<List<ModuleInfo>>> locales = new ConcurrentHashMap<>();
+
+		private HierarchySnapshot(List<GroupInfo> modules, long lastModified) {
+			this.modules = modules;
+			this.lastModified = lastModified;
+			this.modified = lastModified > 0 ? lastModified : System.currentTimeMillis();
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		hierarchy = loadHierarchy();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Scheduled(initialDelayString = "${hierarchy.reload-interval:60000}", fixedDelayString = "${hierarchy.reload-interval:60000}")
+	public void reloadHierarchy() {
+		if (!reload) {
+			return;
+		}
+		try {
+			if (modulesResource.lastModified() != hierarchy.lastModified) {
+				hierarchy = loadHierarchy();
+				log.info("Hierarchy reloaded from {}", modulesResource);
+			}
+		} catch (Exception e) {
+			log.warn("Hierarchy not reloaded from {}: {}", modulesResource, e.getMessage());
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
-	@Cacheable
 	@Override
 	public List<ModuleInfo> getAccountHierarchy(String accountNumber, Locale locale) {
-		return getSelfcareModulesFromResources().stream().map(rawModule -> convertToModuleInfo(rawModule))
-				.collect(Collectors.toList());
+		return getHierarchy(hierarchy, locale).getBody();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Catalog<List<ModuleInfo>> getHierarchyCatalog(Locale locale) {
+		return getHierarchy(hierarchy, locale);
+	}
+
+	private Catalog<List<ModuleInfo>> getHierarchy(HierarchySnapshot snapshot, Locale locale) {
+		return snapshot.locales.computeIfAbsent(locale.toLanguageTag(), key -> Catalog.of(mapper,
+			Collections.unmodifiableList(snapshot.modules.stream()
+				.map(rawModule -> convertToModuleInfo(rawModule, locale)).collect(Collectors.toList())),
+			snapshot.modified));
+	}
+
+	private HierarchySnapshot loadHierarchy() {
+		long lastModified;
+		try {
+			lastModified = modulesResource.lastModified();
+		} catch (IOException e) {
+			lastModified = 0;
+		}
+		HierarchySnapshot snapshot = new HierarchySnapshot(getSelfcareModulesFromResources(), lastModified);
+		for (String language : ValidationUtil.SUPPORTED_LOCALES) {
+			getHierarchy(snapshot, Locale.forLanguageTag(language));
+		}
+		return snapshot;
 	}
 
-	private ModuleInfo convertToModuleInfo(GroupInfo rawModule) {
+	private ModuleInfo convertToModuleInfo(GroupInfo rawModule, Locale locale) {
 		ModuleInfo moduleInfo = new ModuleInfo();
 		moduleInfo.setName(rawModule.getName());
 		moduleInfo.setModuleId(rawModule.getModuleId());
 		moduleInfo.setBusinessPriority(rawModule.getBusinessPriority());
 		moduleInfo.setTranslation(localizationService.translate(
 			moduleInfo.getModuleId() == null ? null : "module" + "." + moduleInfo.getModuleId().toLowerCase(),
-			rawModule.getAttributes(), LocaleContextHolder.getLocale(), rawModule.getName()));
+			rawModule.getAttributes(), locale, rawModule.getName()));
 
 		moduleInfo.setGroups(rawModule.getGroups() == null ? null
-				: rawModule.getGroups().stream().map(group -> convertToRightGroup(group)).collect(Collectors.toList()));
+				: Collections.unmodifiableList(rawModule.getGroups().stream()
+					.map(group -> convertToRightGroup(group, locale)).collect(Collectors.toList())));
 		return moduleInfo;
 	}
 
-	private RightGroup convertToRightGroup(GroupInfo group) {
+	private RightGroup convertToRightGroup(GroupInfo group, Locale locale) {
 		RightGroup rightGroup = new RightGroup();
 		rightGroup.setName(group.getName());
 		rightGroup.setGroupId(group.getGroupId());
@@ -96,7 +187,7 @@ public class GroupServiceImpl implements GroupService {
 		rightGroup.setBusinessPriority(group.getBusinessPriority());
 		rightGroup.setTranslation(localizationService.translate(
 				rightGroup.getGroupId() == null ? null : "group" + "." + rightGroup.getGroupId().toLowerCase(),
-				group.getAttributes(), LocaleContextHolder.getLocale(), group.getName()));
+				group.getAttributes(), locale, group.getName()));
 
 		return rightGroup;
 	}
@@ -114,7 +205,7 @@ public class GroupServiceImpl implements GroupService {
 	 * {@inheritDoc}
 	 */
 	@Override
-	@Cacheable
+	@Cacheable(cacheNames = CacheConfiguration.ACCOUNT_ROLES, keyGenerator = CacheConfiguration.LOCALE_KEY_GENERATOR)
 	public List<RoleInfo> getAccountRoles(String accountNumber) {
 		return roleService.getAccountRoles(
 				keycloak.realm(realm).groups().group(searchService.getMasterGroupId(SELFCARE_GROUP)), false);
@@ -20,6 +20,8 @@ import com.karumien.cloud.sso.api.model.Credentials;
 import com.karumien.cloud.sso.api.model.DriverPin;
 import com.karumien.cloud.sso.api.model.IdentityInfo;
 import com.karumien.cloud.sso.api.model.IdentityPropertyType;
+import com.karumien.cloud.sso.api.model.IdentityRolesResult;
+import com.karumien.cloud.sso.api.model.IdentityRolesUpdate;
 import com.karumien.cloud.sso.api.model.IdentityState;
 import com.karumien.cloud.sso.api.model.UserActionType;
 
@@ -151,6 +153,15 @@ public interface IdentityService {
      */
     void updateRolesOfIdentity(String identityId, List<String> roles, UpdateType updateType, List<RoleRepresentation> scope);
 
+    /**
+     * Apply role delta to multiple Identities, roles are resolved once and only missing/assigned roles are sent.
+     * 
+     * @param update
+     *            {@link IdentityRolesUpdate} CRM Contact Numbers with roles to add and remove
+     * @return {@link List} of {@link IdentityRolesResult} for every requested Identity
+     */
+    List<IdentityRolesResult> updateRolesOfIdentities(IdentityRolesUpdate update);
+
     /**
      * Function that save pin of Identity driver base on input.
      * 
@@ -194,6 +205,24 @@ public interface IdentityService {
 
     Optional<UserRepresentation> findIdentityNav4(String nav4Id);
 
+    /**
+     * Returns ID of identity by contactNumber (or identity ID), identity is not loaded from KeyCloak in database read mode.
+     * 
+     * @param contactNumber
+     *            unique Identity CRM ID or identity ID
+     * @return {@link Optional} identity ID
+     */
+    Optional<String> findIdentityId(String contactNumber);
+
+    /**
+     * Returns ID of identity by NAV4 ID, identity is not loaded from KeyCloak.
+     * 
+     * @param nav4Id
+     *            unique NAV4 ID
+     * @return {@link Optional} identity ID
+     */
+    Optional<String> findIdentityIdNav4(String nav4Id);
+
     Optional<UserRepresentation> findIdentityByUsername(String username);
 
     /**
@@ -269,6 +298,35 @@ public interface IdentityService {
 
     Optional<UserRepresentation> findUserRepresentationById(String identityId);
 
+    /**
+     * Load Identities in batch (users with attributes), missing identities are skipped.
+     * 
+     * @param identityIds
+     *            Identity IDs
+     * @return {@link List} of {@link UserRepresentation} in order of {@code identityIds}
+     */
+    List<UserRepresentation> findUserRepresentationsByIds(List<String> identityIds);
+
+    /**
+     * Map Identities in batch, credentials presence is resolved by one query.
+     * 
+     * @param userRepresentations
+     *            loaded Identities
+     * @param extendedInfo
+     *            attach login info informations
+     * @return {@link List} of {@link IdentityInfo}
+     */
+    List<IdentityInfo> mapping(List<UserRepresentation> userRepresentations, boolean extendedInfo);
+
+    /**
+     * Resolve states of Identities in batch, credentials presence is resolved by one query.
+     * 
+     * @param userRepresentations
+     *            loaded Identities
+     * @return {@link Map} Identity ID to {@link IdentityState}
+     */
+    Map<String, IdentityState> mappingIdentityStates(List<UserRepresentation> userRepresentations);
+
     default void putIfPresent(Map<IdentityPropertyType, String> search, IdentityPropertyType key, String value) {
         if (StringUtils.hasText(value)) {
             search.put(key, value);
@@ -19,28 +19,36 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.core.Response;
 
 import org.keycloak.admin.client.Keycloak;
-import org.keycloak.admin.client.resource.RoleResource;
+import org.keycloak.admin.client.resource.RoleScopeResource;
 import org.keycloak.admin.client.resource.UserResource;
 import org.keycloak.representations.idm.CredentialRepresentation;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import com.karumien.cloud.sso.CacheConfiguration;
 import com.karumien.cloud.sso.api.UpdateType;
 import com.karumien.cloud.sso.api.entity.AccountEntity;
 import com.karumien.cloud.sso.api.entity.ClientEntity;
@@ -50,6 +58,9 @@ import com.karumien.cloud.sso.api.model.DriverPin;
 import com.karumien.cloud.sso.api.model.ExtendedInfo;
 import com.karumien.cloud.sso.api.model.IdentityInfo;
 import com.karumien.cloud.sso.api.model.IdentityPropertyType;
+import com.karumien.cloud.sso.api.model.IdentityRolesResult;
+import com.karumien.cloud.sso.api.model.IdentityRolesResultStatus;
+import com.karumien.cloud.sso.api.model.IdentityRolesUpdate;
 import com.karumien.cloud.sso.api.model.IdentityState;
 import com.karumien.cloud.sso.api.model.UserActionType;
 import com.karumien.cloud.sso.api.repository.ClientRepository;
@@ -61,8 +72,12 @@ import com.karumien.cloud.sso.exceptions.IdentityDuplicateException;
 import com.karumien.cloud.sso.exceptions.IdentityEmailNotExistsOrVerifiedException;
 import com.karumien.cloud.sso.exceptions.IdentityNotFoundException;
 import com.karumien.cloud.sso.exceptions.PasswordPolicyException;
+import com.karumien.cloud.sso.exceptions.RoleNotFoundException;
 import com.karumien.cloud.sso.exceptions.UpdateIdentityException;
+import com.karumien.cloud.sso.internal.RoleGraph;
+import com.karumien.cloud.sso.util.BatchUtils;
 
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Implementation {@link IdentityService} for identity management.
@@ -71,13 +86,20 @@ import com.karumien.cloud.sso.exceptions.UpdateIdentityException;
  * @since 1.0, 10. 6. 2019 22:07:27
  */
 @Service
+@Slf4j
 public class IdentityServiceImpl implements IdentityService {
 
     private static final String DEFAULT_DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
 
+    /** Read identities directly from KeyCloak DB instead of KeyCloak Admin REST API */
+    public static final String READ_MODE_DATABASE = "database";
+
     @Value("${keycloak.realm}")
     private String realm;
 
+    @Value("${keycloak.read-mode:" + READ_MODE_DATABASE + "}")
+    private String readMode;
+
     @Autowired
     private Keycloak keycloak;
 
@@ -92,11 +114,16 @@ public class IdentityServiceImpl implements IdentityService {
     
     @Autowired
     private ClientRepository clientRepository;
+
+    @Autowired
+    @Qualifier("keycloakExecutor")
+    private ExecutorService keycloakExecutor;
     
     /**
      * {@inheritDoc}
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfiguration.ACCOUNT_LOCALES, allEntries = true)
     public void deleteIdentity(String contactNumber) {
         UserRepresentation user = findIdentity(contactNumber).orElseThrow(() -> new IdentityNotFoundException(contactNumber));
         delete(user);
@@ -106,6 +133,7 @@ public class IdentityServiceImpl implements IdentityService {
      * {@inheritDoc}
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfiguration.ACCOUNT_LOCALES, allEntries = true)
     public void deleteIdentityNav4(String nav4Id) {
         UserRepresentation user = findIdentityNav4(nav4Id).orElseThrow(() -> new IdentityNotFoundException("NAV4 ID: " + nav4Id));
         delete(user);
@@ -119,6 +147,7 @@ public class IdentityServiceImpl implements IdentityService {
      * {@inheritDoc}
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfiguration.ACCOUNT_LOCALES, allEntries = true)
     public IdentityInfo updateIdentityNav4(String nav4Id, IdentityInfo identity, UpdateType update) {
         UserRepresentation user = findIdentityNav4(nav4Id).orElseThrow(() -> new IdentityNotFoundException("NAV4 ID: " + nav4Id));
         return mapping(update(user, identity, update), false);
@@ -198,6 +227,7 @@ public class IdentityServiceImpl implements IdentityService {
      * {@inheritDoc}
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfiguration.ACCOUNT_LOCALES, allEntries = true)
     public IdentityInfo updateIdentity(String contactNumber, IdentityInfo identityInfo, UpdateType update) {
 
     	if (update == UpdateType.ADD_CASCADE) {
@@ -231,6 +261,8 @@ public class IdentityServiceImpl implements IdentityService {
      * {@inheritDoc}
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfiguration.ACCOUNT_LOCALES, key = "#identityInfo.accountNumber",
+        condition = "#identityInfo.accountNumber != null")
     public IdentityInfo createIdentity(IdentityInfo identityInfo) {
 
         UserRepresentation identity = new UserRepresentation();
@@ -437,6 +469,11 @@ public class IdentityServiceImpl implements IdentityService {
      */
     @Override
     public IdentityInfo getIdentity(String contactNumber, boolean extendedInfo) {
+        if (isDatabaseReadMode()) {
+            return findIdentityId(contactNumber, false)
+                .flatMap(id -> mappingIds(Collections.singletonList(id), extendedInfo).stream().findFirst())
+                .orElseThrow(() -> new IdentityNotFoundException(contactNumber));
+        }
         return mapping(findIdentity(contactNumber).orElseThrow(() -> new IdentityNotFoundException(contactNumber)), extendedInfo);
     }
 
@@ -446,14 +483,11 @@ public class IdentityServiceImpl implements IdentityService {
     @Override
     public List<IdentityInfo> getIdentities(List<String> contactNumbers, boolean extendedInfo) {
         
-        List<IdentityInfo> data = new ArrayList<>();
-        
-        for (String contactNumber : contactNumbers) {
-            searchService.findUserIdsByAttribute(IdentityPropertyType.ATTR_CONTACT_NUMBER, contactNumber)
-                .forEach(userId -> data.add(mapping(keycloak.realm(realm).users().get(userId).toRepresentation(), extendedInfo)));
-        }
+        Map<String, List<String>> userIds = searchService.findUserIdsByAttributeValues(IdentityPropertyType.ATTR_CONTACT_NUMBER, contactNumbers);
         
-        return data;
+        return mappingIds(contactNumbers.stream()
+            .flatMap(contactNumber -> userIds.getOrDefault(contactNumber, new ArrayList<>()).stream())
+            .collect(Collectors.toList()), extendedInfo);
     }
 
     /**
@@ -469,6 +503,25 @@ public class IdentityServiceImpl implements IdentityService {
      */
     @Override
     public Optional<UserRepresentation> findIdentity(String contactNumber, boolean emptyNav4Id) {
+        return findIdentityId(contactNumber, emptyNav4Id).flatMap(this::findUserRepresentationById);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<String> findIdentityId(String contactNumber) {
+        Optional<String> identityId = findIdentityId(contactNumber, false);
+        if (!isIdentityId(contactNumber)) {
+            return identityId;
+        }
+        // identity ID is not searched, existence is checked
+        return identityId.filter(id -> isDatabaseReadMode() 
+            ? !searchService.findUserRepresentationsByIds(Collections.singletonList(id)).isEmpty()
+            : findUserRepresentationById(id).isPresent());
+    }
+
+    private Optional<String> findIdentityId(String contactNumber, boolean emptyNav4Id) {
     	String searchedUserId = null;
     	
     	if (isIdentityId(contactNumber)) {
@@ -478,12 +531,7 @@ public class IdentityServiceImpl implements IdentityService {
 	        if (userIds.size() > 1) {
 	        	
 	        	// T012-197 : duplicity when no perfect one with nav4id=null;
-	        	// TODO: Performance optimize in DB
-
-	        	List<IdentityInfo> users = userIds.stream()
-        			.map(id -> findUserRepresentationById(id))
-        			.filter(Optional::isPresent)
-        			.map(ur -> mapping(ur.get(), false))
+	        	List<IdentityInfo> users = mappingIds(userIds, false).stream()
         			.filter(u -> !StringUtils.hasText(u.getNav4Id()))
 	        		.collect(Collectors.toList());
 	        	
@@ -492,7 +540,6 @@ public class IdentityServiceImpl implements IdentityService {
 	        	}
 	        	
 	        	if (users.size() == 1) {
-		        	// TODO: double load  
 	        		searchedUserId = users.get(0).getIdentityId();
 	        	} else {
 	        		throw new IdentityDuplicateException("Identity with same contactNumber = '" + contactNumber + "' and no different nav4id exists");
@@ -501,7 +548,7 @@ public class IdentityServiceImpl implements IdentityService {
 	        	searchedUserId = userIds.stream().findFirst().orElse(null);
 	        }
     	} 
-        return findUserRepresentationById(searchedUserId);
+        return Optional.ofNullable(searchedUserId);
     }
 
 	private boolean isIdentityId(String contactNumber) {
@@ -521,17 +568,37 @@ public class IdentityServiceImpl implements IdentityService {
         return Optional.empty();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<UserRepresentation> findUserRepresentationsByIds(List<String> identityIds) {
+        if (isDatabaseReadMode()) {
+            return searchService.findUserRepresentationsByIds(identityIds);
+        }
+        return BatchUtils.parallelMap(keycloakExecutor, identityIds, this::findUserRepresentationById).stream()
+            .filter(Optional::isPresent).map(Optional::get)
+            .collect(Collectors.toList());
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Optional<UserRepresentation> findIdentityNav4(String nav4Id) {
+        return findIdentityIdNav4(nav4Id).map(userId -> keycloak.realm(realm).users().get(userId).toRepresentation());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<String> findIdentityIdNav4(String nav4Id) {
         List<String> userIds = searchService.findUserIdsByAttribute(IdentityPropertyType.ATTR_NAV4ID, nav4Id);
         if (userIds.size() > 1) {
             throw new IdentityDuplicateException("Identity with nav4Id = " + nav4Id + " exists.");
         }
-        String userId = userIds.stream().findFirst().orElse(null);
-        return Optional.ofNullable(userId == null ? null : keycloak.realm(realm).users().get(userId).toRepresentation());
+        return userIds.stream().findFirst();
     }
 
     /**
@@ -539,6 +606,21 @@ public class IdentityServiceImpl implements IdentityService {
      */
     @Override
     public IdentityInfo mapping(UserRepresentation userRepresentation, boolean extendedInfo) {
+        return mapping(userRepresentation, extendedInfo, mappingIdentityState(userRepresentation));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<IdentityInfo> mapping(List<UserRepresentation> userRepresentations, boolean extendedInfo) {
+        Map<String, IdentityState> states = mappingIdentityStates(userRepresentations);
+        return userRepresentations.stream()
+            .map(u -> mapping(u, extendedInfo, states.get(u.getId())))
+            .collect(Collectors.toList());
+    }
+
+    private IdentityInfo mapping(UserRepresentation userRepresentation, boolean extendedInfo, IdentityState state) {
 
         // TODO: Orica Mapper
         IdentityInfo identity = new IdentityInfo();
@@ -570,7 +652,7 @@ public class IdentityServiceImpl implements IdentityService {
             identity.setExtendedInfo(extendedInfoData);
         }
         
-        identity.setState(mappingIdentityState(userRepresentation));
+        identity.setState(state);
         identity.setHasCredentials(identity.getState() != IdentityState.CREATED);
         return identity;
     }
@@ -628,7 +710,24 @@ public class IdentityServiceImpl implements IdentityService {
             return IdentityState.NOT_EXISTS;
         }
         
-        if (searchService.hasCredentials(userRepresentation.getId())) {
+        return mappingIdentityState(userRepresentation, searchService.hasCredentials(userRepresentation.getId()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, IdentityState> mappingIdentityStates(List<UserRepresentation> userRepresentations) {
+        Set<String> withCredentials = searchService.findUserIdsWithCredentials(
+            userRepresentations.stream().map(UserRepresentation::getId).collect(Collectors.toList()));
+        Map<String, IdentityState> states = new HashMap<>();
+        userRepresentations.forEach(u -> states.put(u.getId(), mappingIdentityState(u, withCredentials.contains(u.getId()))));
+        return states;
+    }
+
+    private IdentityState mappingIdentityState(UserRepresentation userRepresentation, boolean hasCredentials) {
+
+        if (hasCredentials) {
          
             if (searchService.getSimpleAttribute(userRepresentation.getAttributes(), ATTR_LAST_LOGIN).isPresent()) {
                 return IdentityState.ACTIVE;
@@ -695,24 +794,107 @@ public class IdentityServiceImpl implements IdentityService {
 
         UserResource userResource = Optional.ofNullable(keycloak.realm(realm).users().get(identityId))
                 .orElseThrow(() -> new IdentityNotFoundException("identityId = " + identityId));
+        RoleScopeResource realmLevel = userResource.roles().realmLevel();
+        Map<String, RoleRepresentation> requested = getRoleRepresentations(roles);
 
         if (updateType == UpdateType.UPDATE) {
             // remove unused roles
-            userResource.roles().realmLevel().remove(
-                (scope == null ? userResource.roles().realmLevel().listAll() : scope).stream()
-                    .filter(actualRole -> !roles.contains(actualRole.getId())).collect(Collectors.toList()));
+            List<RoleRepresentation> unused = (scope == null ? realmLevel.listAll() : scope).stream()
+                .filter(actualRole -> !requested.containsKey(actualRole.getName())).collect(Collectors.toList());
+            if (!unused.isEmpty()) {
+                realmLevel.remove(unused);
+            }
+        }
+
+        if (requested.isEmpty()) {
+            return;
         }
 
         // add new roles
         if (updateType == UpdateType.ADD || updateType == UpdateType.UPDATE) {
-            userResource.roles().realmLevel().add(getListOfRoleReprasentationBaseOnIds(roles));
+            realmLevel.add(new ArrayList<>(requested.values()));
         }
 
         // remove roles
         if (updateType == UpdateType.DELETE) {
-            userResource.roles().realmLevel().remove(getListOfRoleReprasentationBaseOnIds(roles));
+            realmLevel.remove(new ArrayList<>(requested.values()));
+        }
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<IdentityRolesResult> updateRolesOfIdentities(IdentityRolesUpdate update) {
+
+        Map<String, RoleRepresentation> add = getRoleRepresentations(update.getAdd());
+        Map<String, RoleRepresentation> remove = getRoleRepresentations(update.getRemove());
+        checkRolesExist(update.getAdd(), add);
+        checkRolesExist(update.getRemove(), remove);
+        remove.keySet().removeAll(add.keySet());
+
+        List<String> contactNumbers = new ArrayList<>(new LinkedHashSet<>(update.getContactNumbers()));
+        Map<String, List<String>> userIds = searchService.findUserIdsByAttributeValues(IdentityPropertyType.ATTR_CONTACT_NUMBER, contactNumbers);
+
+        // current direct mappings of all identities at once, REST mode loads them per identity
+        Map<String, Set<String>> assigned = isDatabaseReadMode() 
+            ? searchService.findUserDirectRealmRoles(userIds.values().stream().flatMap(List::stream).collect(Collectors.toList()))
+            : null;
+
+        return BatchUtils.parallelMap(keycloakExecutor, contactNumbers, 
+            contactNumber -> updateRolesOfIdentity(contactNumber, userIds.get(contactNumber), assigned, add, remove));
+    }
+
+    private IdentityRolesResult updateRolesOfIdentity(String contactNumber, List<String> userIds, Map<String, Set<String>> assigned, 
+            Map<String, RoleRepresentation> add, Map<String, RoleRepresentation> remove) {
+
+        IdentityRolesResult result = new IdentityRolesResult();
+        result.setContactNumber(contactNumber);
+
+        if (CollectionUtils.isEmpty(userIds)) {
+            result.setStatus(IdentityRolesResultStatus.NOT_FOUND);
+            return result;
+        }
+        if (userIds.size() > 1) {
+            result.setStatus(IdentityRolesResultStatus.DUPLICATE);
+            return result;
+        }
+
+        String userId = userIds.get(0);
+        try {
+            RoleScopeResource realmLevel = keycloak.realm(realm).users().get(userId).roles().realmLevel();
+            Set<String> current = assigned != null ? assigned.getOrDefault(userId, Collections.emptySet())
+                : realmLevel.listAll().stream().map(RoleRepresentation::getName).collect(Collectors.toSet());
+
+            List<RoleRepresentation> removing = remove.values().stream()
+                .filter(role -> current.contains(role.getName())).collect(Collectors.toList());
+            List<RoleRepresentation> adding = add.values().stream()
+                .filter(role -> !current.contains(role.getName())).collect(Collectors.toList());
+
+            if (!removing.isEmpty()) {
+                realmLevel.remove(removing);
+            }
+            if (!adding.isEmpty()) {
+                realmLevel.add(adding);
+            }
+
+            result.setStatus(IdentityRolesResultStatus.OK);
+            result.setRemoved(removing.stream().map(RoleRepresentation::getName).collect(Collectors.toList()));
+            result.setAdded(adding.stream().map(RoleRepresentation::getName).collect(Collectors.toList()));
+        } catch (Exception e) {
+            log.warn("Roles of identity {} not updated: {}", contactNumber, e.getMessage());
+            result.setStatus(IdentityRolesResultStatus.ERROR);
+            result.setMessage(e.getMessage());
         }
+        return result;
+    }
 
+    private void checkRolesExist(List<String> roles, Map<String, RoleRepresentation> resolved) {
+        if (roles != null) {
+            roles.stream().filter(role -> !resolved.containsKey(role)).findFirst()
+                .ifPresent(role -> { throw new RoleNotFoundException(role); });
+        }
     }
 
     /**
@@ -814,17 +996,30 @@ public class IdentityServiceImpl implements IdentityService {
         return pin;
     }
 
-    private List<RoleRepresentation> getListOfRoleReprasentationBaseOnIds(List<String> roles) {
-        List<RoleRepresentation> returnList = new ArrayList<>();
-        roles.forEach(role -> {
-            RoleResource searcherRole = keycloak.realm(realm).roles().get(role);
-            try {
-                returnList.add(searcherRole.toRepresentation());
-            } catch (Exception e) {
-
+    /**
+     * Resolve role representations by names from role graph (KeyCloak is asked only for unknown roles), unknown roles are skipped.
+     */
+    private Map<String, RoleRepresentation> getRoleRepresentations(List<String> roles) {
+        Map<String, RoleRepresentation> representations = new LinkedHashMap<>();
+        if (CollectionUtils.isEmpty(roles)) {
+            return representations;
+        }
+        RoleGraph roleGraph = roleService.getRoleGraph();
+        for (String role : roles) {
+            if (!representations.containsKey(role)) {
+                Optional<RoleRepresentation> representation = roleGraph.findRole(role).map(this::toRoleRepresentation);
+                (representation.isPresent() ? representation : roleService.findRoleRepresentation(role))
+                    .ifPresent(r -> representations.put(role, r));
             }
-        });
-        return returnList;
+        }
+        return representations;
+    }
+
+    private RoleRepresentation toRoleRepresentation(RoleGraph.Role role) {
+        RoleRepresentation representation = new RoleRepresentation(role.getName(), role.getDescription(), false);
+        representation.setId(role.getId());
+        representation.setComposite(!role.getComposites().isEmpty());
+        return representation;
     }
 
     /**
@@ -842,6 +1037,10 @@ public class IdentityServiceImpl implements IdentityService {
     public IdentityInfo getIdentityByNav4(String nav4Id, boolean extendedInfo) {
         String userId = searchService.findUserIdsByAttribute(IdentityPropertyType.ATTR_NAV4ID, nav4Id).stream().findFirst()
                 .orElseThrow(() -> new IdentityNotFoundException("NAV4 ID: " + nav4Id));
+        if (isDatabaseReadMode()) {
+            return mappingIds(Collections.singletonList(userId), extendedInfo).stream().findFirst()
+                .orElseThrow(() -> new IdentityNotFoundException("NAV4 ID: " + nav4Id));
+        }
         return mapping(keycloak.realm(realm).users().get(userId).toRepresentation(), extendedInfo);
     }
 
@@ -875,50 +1074,15 @@ public class IdentityServiceImpl implements IdentityService {
      */
     @Override
     public List<IdentityInfo> search(Map<IdentityPropertyType, String> searchFilter, boolean extendedInfo) {
-
-        List<IdentityInfo> found = new ArrayList<>();
-        
-        IdentityPropertyType firstKey = searchFilter.keySet().stream()
-            .findFirst().get();
-        found = mappingIds(searchService.findUserIdsByAttribute(firstKey, searchFilter.remove(firstKey)), extendedInfo);
-                    
-        // filter other 
-        for (IdentityPropertyType key : searchFilter.keySet()) {
-            found = found.stream().filter(i -> hasProperty(i, key, searchFilter.get(key))).collect(Collectors.toList());            
-        }
-        
-        return found;
-    }
-
-    private boolean hasProperty(IdentityInfo i, IdentityPropertyType key, String value) {
-        switch (key) {
-        case ID:
-            return value.equals(i.getIdentityId());
-        case USERNAME:
-            return value.toLowerCase().equals(i.getUsername());
-        case EMAIL:
-            return value.toLowerCase().equals(i.getEmail());
-        case ATTR_ACCOUNT_NUMBER:
-            return value.equals(i.getAccountNumber());
-        case ATTR_CONTACT_NUMBER:
-            return value.equals(i.getContactNumber());
-        case ATTR_NOTE:
-            return value.equals(i.getNote());
-        case ATTR_HAS_CREDENTIALS:
-            return i.isHasCredentials() != null ? i.isHasCredentials().equals(Boolean.valueOf(value)) : false;
-        case ATTR_NAV4ID:
-            return "".equals(value) && !StringUtils.hasText(i.getNav4Id()) || value.equals(i.getNav4Id());
-        case ATTR_PHONE:
-            return value.equals(i.getPhone());
-        default:
-            return false;
-        }
+        return mappingIds(searchService.findUserIds(searchFilter), extendedInfo);
     }
 
     private List<IdentityInfo> mappingIds(List<String> userIds, boolean extendedInfo) {
-        return userIds.stream().map(id -> findUserRepresentationById(id))
-            .filter(f -> f.isPresent()).map(u -> mapping(u.get(), extendedInfo))
-            .collect(Collectors.toList());
+        return mapping(findUserRepresentationsByIds(userIds), extendedInfo);
+    }
+
+    private boolean isDatabaseReadMode() {
+        return READ_MODE_DATABASE.equalsIgnoreCase(readMode);
     }
 
     /**
@@ -13,17 +13,34 @@
  */
 package com.karumien.cloud.sso.service;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import com.karumien.cloud.sso.internal.TranslationTable;
+import com.karumien.cloud.sso.util.ValidationUtil;
+
 /**
  * Implementation of {@link LocalizationService} for translations.
+ * <p>
+ * Messages of all supported languages are compiled into {@link TranslationTable} at startup, {@link MessageSource}
+ * is used only for unsupported locales.
  *
  * @author <a href="miroslav.svoboda@karumien.com">Miroslav Svoboda</a>
  * @since 1.0, 19. 8. 2019 12:58:57
@@ -31,17 +48,35 @@ import org.springframework.util.CollectionUtils;
 @Service
 public class LocalizationServiceImpl implements LocalizationService {
 
+    private static final String MESSAGES = "classpath*:i18n/messages*.properties";
+
     @Autowired
     private MessageSource messageSource;
 
+    private TranslationTable table;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Set<String> keys = new HashSet<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(MESSAGES)) {
+            Properties properties = new Properties();
+            try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            keys.addAll(properties.stringPropertyNames());
+        }
+        table = new TranslationTable(ValidationUtil.SUPPORTED_LOCALES, keys, ATTR_TRANSLATION, this::getMessage);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public String translate(String localeKey, Map<String, List<String>> attributes, Locale locale, String defaultTranslate) {
+        int id = table.idOf(locale);
         String translate = null;
         if (attributes != null) {
-            List<String> translates = attributes.get(ATTR_TRANSLATION + "[" + locale.getLanguage() + "]");
+            List<String> translates = attributes.get(id < 0 ? ATTR_TRANSLATION + "[" + locale.getLanguage() + "]" : table.getAttribute(id));
             if (!CollectionUtils.isEmpty(translates)) {
                 translate = translates.get(0);
             }
@@ -53,10 +88,7 @@ public class LocalizationServiceImpl implements LocalizationService {
             }
         }
         if (translate == null && localeKey != null) {
-            translate = messageSource.getMessage(localeKey, null, locale);
-            if (localeKey.equals(translate)) {
-                translate = null;
-            }
+            translate = id < 0 ? getMessage(localeKey, locale) : table.getMessage(localeKey, id);
         }
         if (translate == null) {
             translate = defaultTranslate;
@@ -64,4 +96,9 @@ public class LocalizationServiceImpl implements LocalizationService {
         return translate;
     }
 
+    private String getMessage(String localeKey, Locale locale) {
+        String translate = messageSource.getMessage(localeKey, null, locale);
+        return localeKey.equals(translate) ? null : translate;
+    }
+
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.karumien.cloud.sso.api.model.OnBoardingJob;
+
+/**
+ * Service provides asynchronous onboarding Jobs, records are stored in DB and processed in background by {@link OnBoardingService}.
+ */
+public interface OnBoardingJobService {
+
+    /**
+     * Spool NDJSON file as new Job and start processing, records are read and stored by background worker.
+     *
+     * @param ndjson
+     *            NDJSON stream, one {@link com.karumien.cloud.sso.api.model.OnBoardingInfo} per line
+     * @return {@link OnBoardingJob} accepted Job
+     * @throws IOException
+     *             on spool error (Job is not created)
+     */
+    OnBoardingJob createJob(InputStream ndjson) throws IOException;
+
+    /**
+     * Get Job progress.
+     *
+     * @param jobId
+     *            Job's ID
+     * @return {@link OnBoardingJob} progress with first errors
+     */
+    OnBoardingJob getJob(String jobId);
+
+    /**
+     * Continue processing of waiting and interrupted Jobs (ie. after restart) from last committed offset.
+     */
+    void resumeJobs();
+
+    /**
+     * Fail Jobs with interrupted upload and delete finished Jobs after retention period.
+     */
+    void purgeJobs();
+
+}
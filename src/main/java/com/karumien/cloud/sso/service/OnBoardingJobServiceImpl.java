@@ -0,0 +1,530 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karumien.cloud.sso.api.entity.OnBoardingJobEntity;
+import com.karumien.cloud.sso.api.entity.OnBoardingJobItem;
+import com.karumien.cloud.sso.api.model.OnBoardingInfo;
+import com.karumien.cloud.sso.api.model.OnBoardingJob;
+import com.karumien.cloud.sso.api.model.OnBoardingJobError;
+import com.karumien.cloud.sso.api.model.OnBoardingJobState;
+import com.karumien.cloud.sso.api.model.OnBoardingResult;
+import com.karumien.cloud.sso.api.repository.OnBoardingJobItemRepository;
+import com.karumien.cloud.sso.api.repository.OnBoardingJobRepository;
+import com.karumien.cloud.sso.exceptions.OnBoardingJobNotFoundException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation {@link OnBoardingJobService} with Jobs persisted in DB.
+ * <p>
+ * Uploaded file is spooled to disk of accepting instance and read by background worker, records are stored in chunks
+ * together with Job total. Records are processed in chunks committed together with Job counters and offset, so
+ * interrupted Job continues from last committed chunk (records of uncommitted chunk are processed again). Job is
+ * leased by one instance, lease expires when heartbeat is not refreshed. Job failing repeatedly or with expired
+ * upload is marked {@link OnBoardingJobState#FAILED}, its records are deleted.
+ * <p>
+ * Records contain credentials: processed records are deleted, failed records keep only position and message and
+ * finished Jobs are purged after retention period.
+ */
+@Service
+@Slf4j
+public class OnBoardingJobServiceImpl implements OnBoardingJobService {
+
+    /** Internal state while records are read from spooled file, reported as {@link OnBoardingJobState#QUEUED} */
+    protected static final String STATE_UPLOADING = "UPLOADING";
+
+    private static final List<String> PENDING_STATES = Arrays.asList(STATE_UPLOADING,
+        OnBoardingJobState.QUEUED.toString(), OnBoardingJobState.RUNNING.toString());
+
+    private static final List<String> FINAL_STATES = Arrays.asList(OnBoardingJobState.FINISHED.toString(),
+        OnBoardingJobState.FAILED.toString());
+
+    private static final int MAX_ERRORS = 100;
+
+    private static final int MAX_MESSAGE_LENGTH = 1024;
+
+    /** SQL IN clause limit for deleting of processed records */
+    private static final int MAX_CHUNK_SIZE = 1000;
+
+    @Value("${onboarding.jobs.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${onboarding.jobs.lease:300000}")
+    private long lease;
+
+    @Value("${onboarding.jobs.spool-dir:${java.io.tmpdir}/onboarding-jobs}")
+    private String spoolDir;
+
+    @Value("${onboarding.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${onboarding.jobs.upload-timeout:3600000}")
+    private long uploadTimeout;
+
+    @Value("${onboarding.jobs.retention:604800000}")
+    private long retention;
+
+    @Autowired
+    private OnBoardingJobRepository jobRepository;
+
+    @Autowired
+    private OnBoardingJobItemRepository itemRepository;
+
+    @Autowired
+    private OnBoardingService onBoardingService;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("onboardingJobExecutor")
+    private ExecutorService onboardingJobExecutor;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OnBoardingJob createJob(InputStream ndjson) throws IOException {
+
+        OnBoardingJobEntity job = new OnBoardingJobEntity();
+        job.setId(UUID.randomUUID().toString());
+        job.setState(STATE_UPLOADING);
+        job.setCreated(Instant.now());
+        job.setOwner(owner);
+        job.setHeartbeat(job.getCreated());
+
+        Path spool = getSpool(job.getId());
+        try {
+            Files.createDirectories(spool.getParent());
+            Files.copy(ndjson, spool);
+            job = jobRepository.save(job);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+
+        startProcessing();
+        return mapping(job);
+    }
+
+    private String validate(String line) {
+        if (line.length() > OnBoardingJobItem.VALUE_LENGTH) {
+            return "Record exceeds " + OnBoardingJobItem.VALUE_LENGTH + " characters";
+        }
+        try {
+            mapper.readValue(line, OnBoardingInfo.class);
+            return null;
+        } catch (JsonProcessingException e) {
+            return truncate("Invalid record: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OnBoardingJob getJob(String jobId) {
+        return mapping(jobRepository.findById(jobId).orElseThrow(() -> new OnBoardingJobNotFoundException(jobId)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Scheduled(initialDelayString = "${onboarding.jobs.poll-interval:30000}", fixedDelayString = "${onboarding.jobs.poll-interval:30000}")
+    public void resumeJobs() {
+        startProcessing();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Scheduled(initialDelayString = "${onboarding.jobs.purge-interval:3600000}", fixedDelayString = "${onboarding.jobs.purge-interval:3600000}")
+    public void purgeJobs() {
+
+        Instant now = Instant.now();
+        for (String jobId : jobRepository.findIdsStale(STATE_UPLOADING, now.minusMillis(uploadTimeout))) {
+            if (claim(jobId, uploadTimeout)) {
+                jobRepository.findById(jobId).ifPresent(job -> fail(job, "Upload interrupted"));
+            }
+        }
+
+        for (String jobId : jobRepository.findIdsFinishedBefore(FINAL_STATES, now.minusMillis(retention))) {
+            transactionTemplate.execute(status -> {
+                itemRepository.deleteByJobId(jobId);
+                jobRepository.deleteById(jobId);
+                return null;
+            });
+            log.info("Onboarding job {} purged", jobId);
+        }
+    }
+
+    private void startProcessing() {
+        if (running.compareAndSet(false, true)) {
+            try {
+                onboardingJobExecutor.execute(() -> {
+                    try {
+                        processJobs();
+                    } catch (Exception e) {
+                        log.warn("Onboarding jobs processing interrupted", e);
+                    } finally {
+                        running.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+            }
+        }
+    }
+
+    /**
+     * Run every pending Job at most once (failed Job is retried by next poll and doesn't block newer Jobs).
+     */
+    protected void processJobs() {
+        Set<String> attempted = new HashSet<>();
+        boolean processed = true;
+        while (processed) {
+            processed = false;
+            for (OnBoardingJobEntity job : jobRepository.findByStates(PENDING_STATES)) {
+                // spooled file is available only on accepting instance
+                if (attempted.contains(job.getId()) || STATE_UPLOADING.equals(job.getState()) && !Files.exists(getSpool(job.getId()))) {
+                    continue;
+                }
+                if (claim(job.getId(), lease)) {
+                    attempted.add(job.getId());
+                    run(job.getId());
+                    processed = true;
+                }
+            }
+        }
+    }
+
+    private boolean claim(String jobId, long expiration) {
+        Instant now = Instant.now();
+        return Boolean.TRUE.equals(transactionTemplate.execute(
+            status -> jobRepository.claim(jobId, owner, now, now.minusMillis(expiration)) == 1));
+    }
+
+    private void run(String jobId) {
+
+        OnBoardingJobEntity job = jobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+
+        MDC.put("jobId", jobId);
+        try {
+            job.setAttempts(job.getAttempts() + 1);
+            job = jobRepository.save(job);
+
+            if (STATE_UPLOADING.equals(job.getState())) {
+                job = ingest(job);
+            }
+            process(job);
+
+        } catch (Exception e) {
+            log.warn("Onboarding job {} attempt {} of {} failed", jobId, job.getAttempts(), maxAttempts, e);
+            job = jobRepository.findById(jobId).orElse(null);
+            if (job != null) {
+                if (job.getAttempts() >= maxAttempts) {
+                    fail(job, truncate(e.getMessage()));
+                } else {
+                    job.setOwner(null);
+                    jobRepository.save(job);
+                }
+            }
+        } finally {
+            MDC.remove("jobId");
+        }
+    }
+
+    /**
+     * Read records from spooled file of Job, file is deleted when all records are stored.
+     */
+    private OnBoardingJobEntity ingest(OnBoardingJobEntity job) throws IOException {
+        Path spool = getSpool(job.getId());
+        try (BufferedReader reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8)) {
+            job = ingest(job, reader);
+        }
+        Files.deleteIfExists(spool);
+        return job;
+    }
+
+    /**
+     * Store records (lines) in chunks committed together with Job total, records stored by previous attempt
+     * (total) are skipped. Invalid record is stored as failed (without value).
+     *
+     * @param job
+     *            uploading Job
+     * @param reader
+     *            NDJSON records
+     * @return queued Job
+     */
+    protected OnBoardingJobEntity ingest(OnBoardingJobEntity job, BufferedReader reader) throws IOException {
+
+        log.info("Onboarding job {} reading records from {}", job.getId(), job.getTotal());
+
+        int size = getChunkSize();
+        List<OnBoardingJobItem> chunk = new ArrayList<>(size);
+        long position = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!StringUtils.hasText(line) || position++ < job.getTotal()) {
+                continue;
+            }
+
+            OnBoardingJobItem item = new OnBoardingJobItem();
+            item.setJobId(job.getId());
+            item.setPosition(position - 1);
+
+            String error = validate(line.trim());
+            if (error == null) {
+                item.setValue(line.trim());
+            } else {
+                item.setStatus(OnBoardingJobItem.STATUS_ERROR);
+                item.setMessage(error);
+            }
+
+            chunk.add(item);
+            if (chunk.size() == size) {
+                job = store(job, chunk, false);
+                chunk.clear();
+            }
+        }
+
+        return store(job, chunk, true);
+    }
+
+    private OnBoardingJobEntity store(OnBoardingJobEntity job, List<OnBoardingJobItem> chunk, boolean last) {
+        return transactionTemplate.execute(status -> {
+
+            Instant now = Instant.now();
+            if (jobRepository.claim(job.getId(), owner, now, now.minusMillis(lease)) != 1) {
+                throw new IllegalStateException("Onboarding job " + job.getId() + " lease lost");
+            }
+
+            itemRepository.saveAll(chunk);
+            job.setTotal(job.getTotal() + chunk.size());
+            job.setFailedCount(job.getFailedCount() + chunk.stream().filter(item -> item.getStatus() != null).count());
+            if (last) {
+                job.setState(OnBoardingJobState.QUEUED.toString());
+            }
+            job.setHeartbeat(now);
+            job.setOwner(owner);
+            return jobRepository.save(job);
+        });
+    }
+
+    /**
+     * Process records of Job from committed offset in chunks.
+     */
+    protected void process(OnBoardingJobEntity job) {
+
+        String jobId = job.getId();
+        log.info("Onboarding job {} processing from offset {} of {}", jobId, job.getCommittedOffset(), job.getTotal());
+        if (job.getStarted() == null) {
+            job.setStarted(Instant.now());
+        }
+        job.setState(OnBoardingJobState.RUNNING.toString());
+        job = jobRepository.save(job);
+
+        List<OnBoardingJobItem> items;
+        while (!(items = itemRepository.findNext(jobId, job.getCommittedOffset(), PageRequest.of(0, getChunkSize()))).isEmpty()) {
+
+            List<OnBoardingJobItem> pending = new ArrayList<>();
+            List<OnBoardingInfo> infos = new ArrayList<>();
+            for (OnBoardingJobItem item : items) {
+                if (item.getStatus() == null) {
+                    pending.add(item);
+                    infos.add(read(item));
+                }
+            }
+
+            job = commit(job, items, pending, infos.isEmpty() ? new ArrayList<>() : onBoardingService.onboarding(infos));
+        }
+
+        job.setState(OnBoardingJobState.FINISHED.toString());
+        job.setFinished(Instant.now());
+        job.setOwner(null);
+        jobRepository.save(job);
+        log.info("Onboarding job {} finished", jobId);
+    }
+
+    /**
+     * Mark Job as failed and delete its records (and spooled file).
+     */
+    private void fail(OnBoardingJobEntity job, String message) {
+        transactionTemplate.execute(status -> {
+            itemRepository.deleteByJobId(job.getId());
+            job.setState(OnBoardingJobState.FAILED.toString());
+            job.setMessage(message);
+            job.setFinished(Instant.now());
+            job.setOwner(null);
+            return jobRepository.save(job);
+        });
+        try {
+            Files.deleteIfExists(getSpool(job.getId()));
+        } catch (IOException e) {
+            log.warn("Can't delete spooled file of onboarding job {}: {}", job.getId(), e.getMessage());
+        }
+        log.warn("Onboarding job {} failed: {}", job.getId(), message);
+    }
+
+    private OnBoardingInfo read(OnBoardingJobItem item) {
+        try {
+            return mapper.readValue(item.getValue(), OnBoardingInfo.class);
+        } catch (JsonProcessingException e) {
+            // validated on upload
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private OnBoardingJobEntity commit(OnBoardingJobEntity job, List<OnBoardingJobItem> items,
+            List<OnBoardingJobItem> pending, List<OnBoardingResult> results) {
+
+        return transactionTemplate.execute(status -> {
+
+            Instant now = Instant.now();
+            if (jobRepository.claim(job.getId(), owner, now, now.minusMillis(lease)) != 1) {
+                throw new IllegalStateException("Onboarding job " + job.getId() + " lease lost");
+            }
+
+            List<OnBoardingJobItem> failed = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                OnBoardingResult result = results.get(i);
+                switch (result.getStatus()) {
+                    case CREATED:
+                        job.setCreatedCount(job.getCreatedCount() + 1);
+                        break;
+                    case UPDATED:
+                        job.setUpdatedCount(job.getUpdatedCount() + 1);
+                        break;
+                    case EXISTS:
+                        job.setExistsCount(job.getExistsCount() + 1);
+                        break;
+                    case SKIPPED:
+                        job.setSkippedCount(job.getSkippedCount() + 1);
+                        break;
+                    default:
+                        // failed record keeps message only, value contains credentials
+                        OnBoardingJobItem item = pending.get(i);
+                        item.setStatus(OnBoardingJobItem.STATUS_ERROR);
+                        item.setMessage(truncate(result.getMessage()));
+                        item.setValue(null);
+                        failed.add(item);
+                        job.setFailedCount(job.getFailedCount() + 1);
+                }
+            }
+
+            // processed records are not needed (contain credentials), failed are kept for report
+            List<Long> processed = pending.stream().filter(item -> item.getStatus() == null)
+                .map(OnBoardingJobItem::getPosition).collect(Collectors.toList());
+            if (!processed.isEmpty()) {
+                itemRepository.deleteByPositions(job.getId(), processed);
+            }
+            itemRepository.saveAll(failed);
+
+            job.setCommittedOffset(items.get(items.size() - 1).getPosition() + 1);
+            job.setHeartbeat(now);
+            job.setOwner(owner);
+            return jobRepository.save(job);
+        });
+    }
+
+    private OnBoardingJob mapping(OnBoardingJobEntity job) {
+
+        OnBoardingJob progress = new OnBoardingJob();
+        progress.setJobId(job.getId());
+        progress.setState(STATE_UPLOADING.equals(job.getState()) ? OnBoardingJobState.QUEUED : OnBoardingJobState.fromValue(job.getState()));
+        progress.setTotal(job.getTotal());
+        progress.setProcessed(job.getCommittedOffset());
+        progress.setCreated(job.getCreatedCount());
+        progress.setUpdated(job.getUpdatedCount());
+        progress.setExists(job.getExistsCount());
+        progress.setSkipped(job.getSkippedCount());
+        progress.setFailed(job.getFailedCount());
+        progress.setCreatedAt(toDateTime(job.getCreated()));
+        progress.setStartedAt(toDateTime(job.getStarted()));
+        progress.setFinishedAt(toDateTime(job.getFinished()));
+        progress.setMessage(job.getMessage());
+
+        if (job.getStarted() != null) {
+            long millis = Duration.between(job.getStarted(), job.getFinished() != null ? job.getFinished() : Instant.now()).toMillis();
+            progress.setThroughput(job.getCommittedOffset() * 1000d / Math.max(millis, 1000));
+        }
+
+        progress.setErrors(itemRepository.findErrors(job.getId(), PageRequest.of(0, MAX_ERRORS)).stream()
+            .map(item -> {
+                OnBoardingJobError error = new OnBoardingJobError();
+                error.setIndex(item.getPosition());
+                error.setMessage(item.getMessage());
+                return error;
+            }).collect(Collectors.toList()));
+
+        return progress;
+    }
+
+    private OffsetDateTime toDateTime(Instant instant) {
+        return instant == null ? null : OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    private String truncate(String message) {
+        return message == null || message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH);
+    }
+
+    private Path getSpool(String jobId) {
+        return Paths.get(spoolDir, jobId + ".ndjson");
+    }
+
+    private int getChunkSize() {
+        return Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE));
+    }
+}
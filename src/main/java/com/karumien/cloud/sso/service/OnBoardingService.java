@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.service;
+
+import java.util.List;
+
+import com.karumien.cloud.sso.api.model.IdentityInfo;
+import com.karumien.cloud.sso.api.model.OnBoardingInfo;
+import com.karumien.cloud.sso.api.model.OnBoardingResult;
+
+/**
+ * Service provides onboarding (import) of Accounts, Identities, their Roles and Credentials.
+ */
+public interface OnBoardingService {
+
+    /**
+     * Onboard one item, error of Account, Identity or Roles is logged, error of credentials is thrown.
+     *
+     * @param onBoardingInfo
+     *            {@link OnBoardingInfo} Account/Identity/Roles to import
+     * @return {@link IdentityInfo} created or updated Identity, {@code null} when item has no Identity or it failed
+     */
+    IdentityInfo onboarding(OnBoardingInfo onBoardingInfo);
+
+    /**
+     * Onboard items in parallel with bounded concurrency. Items of same account are processed in order of request
+     * and account existence is checked once per account. Failed item does not abort the batch.
+     *
+     * @param onBoardingInfos
+     *            {@link List} of {@link OnBoardingInfo} to import
+     * @return {@link List} of {@link OnBoardingResult} in order of request
+     */
+    List<OnBoardingResult> onboarding(List<OnBoardingInfo> onBoardingInfos);
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import org.keycloak.representations.idm.UserRepresentation;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import com.karumien.cloud.sso.api.UpdateType;
+import com.karumien.cloud.sso.api.model.IdentityInfo;
+import com.karumien.cloud.sso.api.model.IdentityState;
+import com.karumien.cloud.sso.api.model.OnBoardingInfo;
+import com.karumien.cloud.sso.api.model.OnBoardingResult;
+import com.karumien.cloud.sso.api.model.OnBoardingStatus;
+import com.karumien.cloud.sso.util.BatchUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation {@link OnBoardingService} for import of Accounts and Identities.
+ */
+@Service
+@Slf4j
+public class OnBoardingServiceImpl implements OnBoardingService {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private IdentityService identityService;
+
+    @Autowired
+    @Qualifier("onboardingExecutor")
+    private ExecutorService onboardingExecutor;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IdentityInfo onboarding(OnBoardingInfo onBoardingInfo) {
+        OnBoardingResult result = new OnBoardingResult();
+        try {
+            onboarding(onBoardingInfo, new HashSet<>(), result);
+        } catch (RuntimeException e) {
+            // identity is set before credentials, only error of credentials is thrown
+            if (result.getIdentity() != null) {
+                throw e;
+            }
+            log.warn("Error import " + onBoardingInfo, e);
+            return null;
+        }
+        return result.getIdentity();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<OnBoardingResult> onboarding(List<OnBoardingInfo> onBoardingInfos) {
+
+        // items of one account are processed sequentially by one task, items without account are independent
+        Map<String, List<Integer>> accounts = new LinkedHashMap<>();
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int index = 0; index < onBoardingInfos.size(); index++) {
+            String accountNumber = getAccountNumber(onBoardingInfos.get(index));
+            if (accountNumber == null) {
+                groups.add(Collections.singletonList(index));
+            } else {
+                accounts.computeIfAbsent(accountNumber, key -> {
+                    List<Integer> group = new ArrayList<>();
+                    groups.add(group);
+                    return group;
+                }).add(index);
+            }
+        }
+
+        OnBoardingResult[] results = new OnBoardingResult[onBoardingInfos.size()];
+        Map<String, String> context = MDC.getCopyOfContextMap();
+
+        BatchUtils.parallelMap(onboardingExecutor, groups, group -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            try {
+                Set<String> existingAccounts = new HashSet<>();
+                for (Integer index : group) {
+                    setContext(context);
+                    results[index] = onboarding(index, onBoardingInfos.get(index), existingAccounts);
+                }
+            } finally {
+                setContext(previous);
+            }
+            return group.size();
+        });
+
+        return Arrays.asList(results);
+    }
+
+    private OnBoardingResult onboarding(int index, OnBoardingInfo onBoardingInfo, Set<String> existingAccounts) {
+
+        OnBoardingResult result = new OnBoardingResult();
+        result.setIndex(index);
+        result.setAccountNumber(getAccountNumber(onBoardingInfo));
+        if (onBoardingInfo.getIdentity() != null) {
+            result.setContactNumber(onBoardingInfo.getIdentity().getContactNumber());
+            result.setNav4Id(onBoardingInfo.getIdentity().getNav4Id());
+        }
+
+        try {
+            result.setStatus(onboarding(onBoardingInfo, existingAccounts, result));
+        } catch (Exception e) {
+            log.warn("Error import " + onBoardingInfo, e);
+            result.setStatus(OnBoardingStatus.ERROR);
+            result.setMessage(StringUtils.hasText(e.getMessage()) ? e.getMessage() : e.getClass().getSimpleName());
+        }
+        return result;
+    }
+
+    private OnBoardingStatus onboarding(OnBoardingInfo onBoardingInfo, Set<String> existingAccounts, OnBoardingResult result) {
+
+        // note
+        if (StringUtils.hasText(onBoardingInfo.getNote())) {
+            MDC.put("note_full", onBoardingInfo.getNote());
+        }
+
+        // account
+        if (onBoardingInfo.getAccount() != null) {
+
+            String accountNumber = onBoardingInfo.getAccount().getAccountNumber();
+            MDC.put("accountNumber", accountNumber);
+
+            // notes
+            if (!StringUtils.hasText(onBoardingInfo.getAccount().getNote())) {
+                onBoardingInfo.getAccount().setNote(onBoardingInfo.getNote());
+            }
+
+            if (!existingAccounts.contains(accountNumber)) {
+                if (!accountService.findAccount(accountNumber).isPresent()) {
+                    accountService.createAccount(onBoardingInfo.getAccount());
+                }
+                existingAccounts.add(accountNumber);
+            }
+        }
+
+        // identity
+        if (onBoardingInfo.getIdentity() == null) {
+            return OnBoardingStatus.SKIPPED;
+        }
+
+        if (onBoardingInfo.getIdentity().getAccountNumber() == null && onBoardingInfo.getAccount() != null) {
+            onBoardingInfo.getIdentity().setAccountNumber(onBoardingInfo.getAccount().getAccountNumber());
+        }
+
+        MDC.put("accountNumber", onBoardingInfo.getIdentity().getAccountNumber());
+        MDC.put("contactNumber", onBoardingInfo.getIdentity().getContactNumber());
+
+        // notes
+        if (!StringUtils.hasText(onBoardingInfo.getIdentity().getNote())) {
+            onBoardingInfo.getIdentity().setNote(onBoardingInfo.getNote());
+        }
+
+        Optional<UserRepresentation> identity;
+        if (StringUtils.hasText(onBoardingInfo.getIdentity().getNav4Id())) {
+            MDC.put("nav4Id", onBoardingInfo.getIdentity().getNav4Id());
+            identity = identityService.findIdentityNav4(onBoardingInfo.getIdentity().getNav4Id());
+        } else {
+            identity = identityService.findIdentity(onBoardingInfo.getIdentity().getContactNumber(), true);
+        }
+
+        IdentityInfo identityInfo;
+        OnBoardingStatus status;
+
+        if (identity.isPresent()) {
+            MDC.put("identityId", identity.get().getId());
+            status = OnBoardingStatus.EXISTS;
+
+            if (Boolean.TRUE.equals(onBoardingInfo.isOverwriteIdentity())) {
+                identityInfo = identityService.updateIdentity(onBoardingInfo.getIdentity().getContactNumber(),
+                    onBoardingInfo.getIdentity(), UpdateType.UPDATE);
+                status = OnBoardingStatus.UPDATED;
+            } else {
+                identityInfo = identityService.mapping(identity.get(), false);
+            }
+
+            if (!CollectionUtils.isEmpty(onBoardingInfo.getRoles()) && Boolean.TRUE.equals(onBoardingInfo.isOverwriteRoles())) {
+                identityService.updateRolesOfIdentity(identityInfo.getIdentityId(), onBoardingInfo.getRoles(), UpdateType.ADD, null);
+                status = OnBoardingStatus.UPDATED;
+            }
+
+        } else {
+            identityInfo = identityService.createIdentity(onBoardingInfo.getIdentity());
+            status = OnBoardingStatus.CREATED;
+
+            if (!CollectionUtils.isEmpty(onBoardingInfo.getRoles())) {
+                identityService.updateRolesOfIdentity(identityInfo.getIdentityId(), onBoardingInfo.getRoles(), UpdateType.ADD, null);
+            }
+        }
+
+        result.setIdentity(identityInfo);
+
+        if ((!identity.isPresent() || Boolean.TRUE.equals(onBoardingInfo.isOverwritePassword()))
+                && identityInfo != null && onBoardingInfo.getCredentials() != null) {
+            if (StringUtils.hasText(onBoardingInfo.getIdentity().getNav4Id())) {
+                identityService.createIdentityCredentialsNav4(onBoardingInfo.getIdentity().getNav4Id(), onBoardingInfo.getCredentials());
+            } else {
+                identityService.createIdentityCredentials(onBoardingInfo.getIdentity().getContactNumber(), onBoardingInfo.getCredentials());
+            }
+            identityInfo.setState(IdentityState.CREDENTIALS_CREATED);
+            if (status == OnBoardingStatus.EXISTS) {
+                status = OnBoardingStatus.UPDATED;
+            }
+        }
+
+        return status;
+    }
+
+    private String getAccountNumber(OnBoardingInfo onBoardingInfo) {
+        if (onBoardingInfo.getAccount() != null && StringUtils.hasText(onBoardingInfo.getAccount().getAccountNumber())) {
+            return onBoardingInfo.getAccount().getAccountNumber();
+        }
+        return onBoardingInfo.getIdentity() != null && StringUtils.hasText(onBoardingInfo.getIdentity().getAccountNumber())
+            ? onBoardingInfo.getIdentity().getAccountNumber() : null;
+    }
+
+    private void setContext(Map<String, String> context) {
+        if (context == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+}
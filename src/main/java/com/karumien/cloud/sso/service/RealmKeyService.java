@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.service;
+
+import java.security.PublicKey;
+import java.util.Optional;
+
+import com.karumien.cloud.sso.api.model.JsonWebKeySet;
+
+/**
+ * Service provides cached signing keys of realm (public key and JWKS).
+ */
+public interface RealmKeyService {
+
+    /**
+     * Returns active public key of realm (Base64 encoded X.509).
+     * 
+     * @return String public key
+     */
+    String getPublicKey();
+
+    /**
+     * Returns realm signing key by Key ID, unknown Key ID forces (rate limited) reload of keys.
+     * 
+     * @param kid
+     *            Key ID from JWT header
+     * @return {@link Optional} of {@link PublicKey}
+     */
+    Optional<PublicKey> getPublicKey(String kid);
+
+    /**
+     * Returns signing keys of realm as JSON Web Key Set.
+     * 
+     * @return {@link JsonWebKeySet} signing keys
+     */
+    JsonWebKeySet getJsonWebKeySet();
+
+    /**
+     * Returns ETag of current signing keys.
+     * 
+     * @return String quoted ETag
+     */
+    String getETag();
+
+    /**
+     * Returns max age (in seconds) for which clients can cache keys.
+     * 
+     * @return long max age in seconds
+     */
+    long getMaxAge();
+
+    /**
+     * Reload keys from KeyCloak, last good keys are kept when KeyCloak is unavailable.
+     */
+    void refresh();
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.service;
+
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.jose.jwk.JSONWebKeySet;
+import org.keycloak.jose.jwk.JWK;
+import org.keycloak.jose.jwk.JWKParser;
+import org.keycloak.crypto.Algorithm;
+import org.keycloak.jose.jwk.RSAPublicJWK;
+import org.keycloak.representations.idm.PublishedRealmRepresentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karumien.cloud.sso.api.model.JsonWebKey;
+import com.karumien.cloud.sso.api.model.JsonWebKeySet;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation of {@link RealmKeyService} which keeps last good realm keys in memory.
+ * <p>
+ * Keys are loaded once and reloaded on schedule or on unknown Key ID. Failed reload keeps previous keys, failed
+ * first load is not repeated sooner than <code>keycloak.keys.min-refresh-interval</code>.
+ */
+@Slf4j
+@Service
+public class RealmKeyServiceImpl implements RealmKeyService {
+
+    @Value("${keycloak.realm}")
+    private String realm;
+
+    @Value("${keycloak.auth-server-url}")
+    private String adminServerUrl;
+
+    @Value("${keycloak.keys.max-age:300}")
+    private long maxAge;
+
+    @Value("${keycloak.keys.min-refresh-interval:10000}")
+    private long minRefreshInterval;
+
+    @Autowired
+    @Qualifier("tokenClient")
+    private ResteasyClient tokenClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Keycloak keycloak;
+
+    private volatile RealmKeys keys;
+
+    private volatile long lastAttempt;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPublicKey() {
+        return getKeys().publicKey;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<PublicKey> getPublicKey(String kid) {
+        PublicKey publicKey = getKeys().publicKeys.get(kid);
+        if (publicKey == null && System.currentTimeMillis() - lastAttempt > minRefreshInterval) {
+            refreshIfStale(kid);
+            publicKey = getKeys().publicKeys.get(kid);
+        }
+        return Optional.ofNullable(publicKey);
+    }
+
+    /**
+     * Reload keys on unknown Key ID, checked again under lock: concurrent requests with the same (or forged) Key ID wait
+     * for one reload and don't repeat it.
+     */
+    private synchronized void refreshIfStale(String kid) {
+        RealmKeys current = keys;
+        if (current != null && current.publicKeys.containsKey(kid) || System.currentTimeMillis() - lastAttempt <= minRefreshInterval) {
+            return;
+        }
+        log.info("Unknown key {}, reloading keys of realm {}", kid, realm);
+        refresh();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JsonWebKeySet getJsonWebKeySet() {
+        return getKeys().jsonWebKeySet;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getETag() {
+        return getKeys().etag;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Scheduled(initialDelayString = "${keycloak.keys.initial-delay:0}", fixedDelayString = "${keycloak.keys.refresh-interval:300000}")
+    public synchronized void refresh() {
+        lastAttempt = System.currentTimeMillis();
+        try {
+            keys = load();
+        } catch (Exception e) {
+            if (keys == null) {
+                log.warn("Can't load keys of realm {}: {}", realm, e.getMessage());
+            } else {
+                log.warn("Can't reload keys of realm {}, using keys loaded {} s ago: {}", realm,
+                    TimeUnit.MILLISECONDS.toSeconds(lastAttempt - keys.loaded), e.getMessage());
+            }
+        }
+    }
+
+    private RealmKeys getKeys() {
+        RealmKeys current = keys;
+        if (current == null) {
+            synchronized (this) {
+                if (keys == null) {
+                    if (System.currentTimeMillis() - lastAttempt <= minRefreshInterval) {
+                        throw new IllegalStateException("Can't retreive public key, keys of realm " + realm + " are not loaded yet");
+                    }
+                    try {
+                        lastAttempt = System.currentTimeMillis();
+                        keys = load();
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Can't retreive public key", e);
+                    }
+                }
+                current = keys;
+            }
+        }
+        return current;
+    }
+
+    private RealmKeys load() throws JsonProcessingException {
+
+        String realmUrl = adminServerUrl + "/realms/" + realm;
+        PublishedRealmRepresentation realmInfo = tokenClient.target(realmUrl)
+            .request(MediaType.APPLICATION_JSON).get(PublishedRealmRepresentation.class);
+        JSONWebKeySet certs = tokenClient.target(realmUrl + "/protocol/openid-connect/certs")
+            .request(MediaType.APPLICATION_JSON).get(JSONWebKeySet.class);
+
+        Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+        JsonWebKeySet jsonWebKeySet = new JsonWebKeySet();
+        jsonWebKeySet.setKeys(new ArrayList<>());
+
+        if (certs.getKeys() != null) {
+            for (JWK jwk : certs.getKeys()) {
+                if (!JWK.Use.SIG.asString().equals(jwk.getPublicKeyUse())) {
+                    continue;
+                }
+                publicKeys.put(jwk.getKeyId(), JWKParser.create(jwk).toPublicKey());
+                jsonWebKeySet.addKeysItem(mapping(jwk));
+            }
+        }
+
+        String publicKey = realmInfo.getPublicKeyPem();
+        if (publicKey == null) {
+            PublicKey active = publicKeys.get(activeKeyId(certs));
+            publicKey = active == null ? null : Base64.getEncoder().encodeToString(active.getEncoded());
+        }
+
+        String etag = "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(jsonWebKeySet)) + "\"";
+        log.info("Loaded {} keys of realm {}", publicKeys.size(), realm);
+
+        return new RealmKeys(publicKey, Collections.unmodifiableMap(publicKeys), jsonWebKeySet, etag, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns Key ID of active RS256 key by realm keys metadata, first published RS256 signing key is used when metadata
+     * are not available.
+     */
+    private String activeKeyId(JSONWebKeySet certs) {
+        try {
+            String kid = keycloak.realm(realm).keys().getKeyMetadata().getActive().get(Algorithm.RS256);
+            if (kid != null) {
+                return kid;
+            }
+        } catch (Exception e) {
+            log.warn("Can't get active key of realm {}: {}", realm, e.getMessage());
+        }
+        if (certs.getKeys() == null) {
+            return null;
+        }
+        for (JWK jwk : certs.getKeys()) {
+            if (Algorithm.RS256.equals(jwk.getAlgorithm()) && JWK.Use.SIG.asString().equals(jwk.getPublicKeyUse())) {
+                return jwk.getKeyId();
+            }
+        }
+        return null;
+    }
+
+    private JsonWebKey mapping(JWK jwk) {
+        JsonWebKey key = new JsonWebKey();
+        key.setKid(jwk.getKeyId());
+        key.setKty(jwk.getKeyType());
+        key.setAlg(jwk.getAlgorithm());
+        key.setUse(jwk.getPublicKeyUse());
+        key.setN((String) jwk.getOtherClaims().get(RSAPublicJWK.MODULUS));
+        key.setE((String) jwk.getOtherClaims().get(RSAPublicJWK.PUBLIC_EXPONENT));
+        Object x5c = jwk.getOtherClaims().get("x5c");
+        if (x5c instanceof Iterable) {
+            ((Iterable<?>) x5c).forEach(cert -> key.addX5cItem(String.valueOf(cert)));
+        }
+        key.setX5t((String) jwk.getOtherClaims().get("x5t"));
+        return key;
+    }
+
+    /**
+     * Immutable snapshot of loaded realm keys.
+     */
+    private static final class RealmKeys {
+
+        private final String publicKey;
+        private final Map<String, PublicKey> publicKeys;
+        private final JsonWebKeySet jsonWebKeySet;
+        private final String etag;
+        private final long loaded;
+
+        private RealmKeys(String publicKey, Map<String, PublicKey> publicKeys, JsonWebKeySet jsonWebKeySet, String etag, long loaded) {
+            this.publicKey = publicKey;
+            this.publicKeys = publicKeys;
+            this.jsonWebKeySet = jsonWebKeySet;
+            this.etag = etag;
+            this.loaded = loaded;
+        }
+    }
+}
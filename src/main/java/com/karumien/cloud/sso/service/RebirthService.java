@@ -6,7 +6,14 @@
  */
 package com.karumien.cloud.sso.service;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
 import com.karumien.cloud.sso.api.entity.RebirthEntity;
+import com.karumien.cloud.sso.api.model.OnBoardingInfo;
+import com.karumien.cloud.sso.api.model.RebirthBatch;
+import com.karumien.cloud.sso.api.model.RebirthResult;
 
 /**
  * Service provides scenarios for Rebirth's management.
@@ -15,6 +22,54 @@ import com.karumien.cloud.sso.api.entity.RebirthEntity;
  * @since 1.0, 16. 5. 2020 22:07:27
  */
 public interface RebirthService {
+
+    /** Default client for reset email after rebirth */
+    String DEFAULT_CLIENT_ID = "clientzone";
+
+    /** Default redirect after reset email after rebirth */
+    String DEFAULT_REDIRECT_URI = "http://clients.eurowag.com/";
+
     RebirthEntity createRebirth(RebirthEntity rebirth);
     RebirthEntity getRebirth(String nav4Id);
+
+    /**
+     * Store onboarding skeleton of Identity (by its NAV4 ID) in compact format.
+     * 
+     * @param onboarding
+     *            {@link OnBoardingInfo} skeleton
+     * @return {@link RebirthEntity} stored skeleton
+     * @throws IOException
+     *             when skeleton can't be encoded
+     */
+    RebirthEntity createRebirth(OnBoardingInfo onboarding) throws IOException;
+
+    /**
+     * Load Rebirths by NAV4 IDs, missing are skipped.
+     * 
+     * @param nav4Ids
+     *            NAV4 IDs
+     * @return {@link List} of {@link RebirthEntity}
+     */
+    List<RebirthEntity> getRebirths(Collection<String> nav4Ids);
+
+    /**
+     * Read onboarding skeleton of Rebirth (legacy JSON is migrated to compact format), note is marked as rebirth of today.
+     * 
+     * @param rebirth
+     *            {@link RebirthEntity} stored skeleton
+     * @return {@link OnBoardingInfo} skeleton
+     * @throws IOException
+     *             when skeleton can't be read
+     */
+    OnBoardingInfo getOnboarding(RebirthEntity rebirth) throws IOException;
+
+    /**
+     * Rebirth multiple Identities: classify NAV4 IDs against existing Identities in one query, 
+     * create missing Identities from skeletons in parallel and optionally send reset emails.
+     * 
+     * @param batch
+     *            {@link RebirthBatch} NAV4 IDs and options
+     * @return {@link List} of {@link RebirthResult} in order of NAV4 IDs (duplicates removed)
+     */
+    List<RebirthResult> rebirth(RebirthBatch batch);
 }
@@ -26,13 +26,43 @@
  */
 package com.karumien.cloud.sso.service;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.karumien.cloud.sso.api.entity.RebirthEntity;
+import com.karumien.cloud.sso.api.model.ClientRedirect;
+import com.karumien.cloud.sso.api.model.IdentityPropertyType;
+import com.karumien.cloud.sso.api.model.IdentityState;
+import com.karumien.cloud.sso.api.model.OnBoardingInfo;
+import com.karumien.cloud.sso.api.model.OnBoardingResult;
+import com.karumien.cloud.sso.api.model.OnBoardingStatus;
+import com.karumien.cloud.sso.api.model.RebirthBatch;
+import com.karumien.cloud.sso.api.model.RebirthResult;
+import com.karumien.cloud.sso.api.model.RebirthStatus;
 import com.karumien.cloud.sso.api.repository.RebirthEntityRepository;
 import com.karumien.cloud.sso.exceptions.RebirthNotFoundException;
+import com.karumien.cloud.sso.internal.RebirthCodec;
+import com.karumien.cloud.sso.util.BatchUtils;
+
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Implementation {@link RebirthService} for Account Management.
@@ -41,10 +71,31 @@ import com.karumien.cloud.sso.exceptions.RebirthNotFoundException;
  * @since 1.0, 17. 5. 2020 18:59:57
  */
 @Service
+@Slf4j
 public class RebirthServiceImpl implements RebirthService {
 
+    private static final int IN_CLAUSE_SIZE = 1000;
+
     @Autowired
     private RebirthEntityRepository rebirthEntityRepository;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private IdentityService identityService;
+
+    @Autowired
+    private OnBoardingService onBoardingService;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    @Qualifier("keycloakExecutor")
+    private ExecutorService keycloakExecutor;
+
+    private final RebirthCodec codec = new RebirthCodec();
     
     /**
      * {@inheritDoc}
@@ -54,6 +105,18 @@ public class RebirthServiceImpl implements RebirthService {
     public RebirthEntity createRebirth(RebirthEntity rebirthEntity) {
         return rebirthEntityRepository.save(rebirthEntity);
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public RebirthEntity createRebirth(OnBoardingInfo onboarding) throws IOException {
+        return rebirthEntityRepository.save(RebirthEntity.builder()
+            .nav4Id(onboarding.getIdentity().getNav4Id())
+            .payload(codec.encode(onboarding))
+            .build());
+    }
     
     /**
      * {@inheritDoc}
@@ -63,5 +126,173 @@ public class RebirthServiceImpl implements RebirthService {
     public RebirthEntity getRebirth(String nav4Id) {
         return rebirthEntityRepository.findById(nav4Id).orElseThrow(() -> new RebirthNotFoundException(nav4Id));
     }
-    
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<RebirthEntity> getRebirths(Collection<String> nav4Ids) {
+        List<RebirthEntity> rebirths = new ArrayList<>();
+        if (!CollectionUtils.isEmpty(nav4Ids)) {
+            for (List<String> chunk : BatchUtils.partition(new ArrayList<>(new HashSet<>(nav4Ids)), IN_CLAUSE_SIZE)) {
+                rebirths.addAll(rebirthEntityRepository.findByNav4Ids(chunk));
+            }
+        }
+        return rebirths;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OnBoardingInfo getOnboarding(RebirthEntity rebirth) throws IOException {
+        List<RebirthEntity> migrated = new ArrayList<>(1);
+        OnBoardingInfo onboarding = decode(rebirth, migrated);
+        migrate(migrated);
+        return onboarding;
+    }
+
+    /**
+     * Decode skeleton, legacy JSON is converted to compact payload and added to migrated. JSON is kept for rollback to
+     * previous release, it is removed by cleanup step of upgrade.sql.
+     */
+    private OnBoardingInfo decode(RebirthEntity rebirth, List<RebirthEntity> migrated) throws IOException {
+
+        OnBoardingInfo onboarding;
+        if (rebirth.getPayload() != null) {
+            onboarding = codec.decode(rebirth.getPayload());
+        } else {
+            onboarding = mapper.readValue(rebirth.getValue(), OnBoardingInfo.class);
+            rebirth.setPayload(codec.encode(onboarding));
+            migrated.add(rebirth);
+        }
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd");
+        onboarding.setNote((StringUtils.hasText(onboarding.getNote()) ? onboarding.getNote() + ", " : "")
+            + LocalDateTime.now().format(formatter) + "-RBRTH");
+
+        return onboarding;
+    }
+
+    private void migrate(List<RebirthEntity> migrated) {
+        if (!migrated.isEmpty()) {
+            try {
+                rebirthEntityRepository.saveAll(migrated);
+            } catch (Exception e) {
+                // stays in JSON, next read tries again
+                log.warn("Rebirth skeletons not migrated: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<RebirthResult> rebirth(RebirthBatch batch) {
+
+        boolean apply = !Boolean.TRUE.equals(batch.isDryRun());
+        List<String> nav4Ids = new ArrayList<>(new LinkedHashSet<>(batch.getNav4Ids()));
+
+        Map<String, Map<String, IdentityState>> states = searchService.findIdentityStatesByAttributeValues(IdentityPropertyType.ATTR_NAV4ID, nav4Ids);
+        Map<String, RebirthEntity> rebirths = getRebirths(nav4Ids.stream().filter(nav4Id -> !states.containsKey(nav4Id)).collect(Collectors.toList()))
+            .stream().collect(Collectors.toMap(RebirthEntity::getNav4Id, Function.identity()));
+
+        List<RebirthResult> results = new ArrayList<>(nav4Ids.size());
+        List<RebirthEntity> migrated = new ArrayList<>();
+        List<RebirthResult> reborn = new ArrayList<>();
+        List<OnBoardingInfo> onboardings = new ArrayList<>();
+
+        for (String nav4Id : nav4Ids) {
+
+            RebirthResult result = new RebirthResult();
+            result.setNav4Id(nav4Id);
+            results.add(result);
+
+            Map<String, IdentityState> identities = states.get(nav4Id);
+            if (identities != null) {
+                if (identities.size() > 1) {
+                    result.setStatus(RebirthStatus.DUPLICATE);
+                } else {
+                    result.setStatus(RebirthStatus.EXISTS);
+                    result.setState(identities.values().iterator().next());
+                }
+                continue;
+            }
+
+            result.setState(IdentityState.NOT_EXISTS);
+            RebirthEntity rebirth = rebirths.get(nav4Id);
+            if (rebirth == null) {
+                result.setStatus(RebirthStatus.NOT_FOUND);
+                continue;
+            }
+
+            try {
+                OnBoardingInfo onboarding = decode(rebirth, migrated);
+                result.setStatus(RebirthStatus.REBORN);
+                if (apply) {
+                    reborn.add(result);
+                    onboardings.add(onboarding);
+                } else {
+                    result.setIdentity(onboarding.getIdentity());
+                }
+            } catch (IOException e) {
+                result.setStatus(RebirthStatus.ERROR);
+                result.setMessage("Can't read skeleton: " + e.getMessage());
+            }
+        }
+
+        // dry run only classifies, nothing is written
+        if (apply) {
+            migrate(migrated);
+        }
+
+        if (!onboardings.isEmpty()) {
+            List<OnBoardingResult> created = onBoardingService.onboarding(onboardings);
+            for (int i = 0; i < reborn.size(); i++) {
+                RebirthResult result = reborn.get(i);
+                OnBoardingResult onboarding = created.get(i);
+                result.setIdentity(onboarding.getIdentity());
+                if (onboarding.getIdentity() != null) {
+                    result.setState(onboarding.getIdentity().getState());
+                }
+                if (onboarding.getStatus() == OnBoardingStatus.ERROR) {
+                    result.setStatus(RebirthStatus.ERROR);
+                    result.setMessage(onboarding.getMessage());
+                }
+            }
+        }
+
+        if (apply && Boolean.TRUE.equals(batch.isSendResetEmail())) {
+            sendResetEmails(results, batch);
+        }
+
+        return results;
+    }
+
+    private void sendResetEmails(List<RebirthResult> results, RebirthBatch batch) {
+
+        // reborn with known password or already logged in identities don't need reset
+        List<RebirthResult> recipients = results.stream()
+            .filter(result -> result.getStatus() == RebirthStatus.REBORN && result.getState() == IdentityState.CREATED
+                || result.getStatus() == RebirthStatus.EXISTS && result.getState() != IdentityState.ACTIVE)
+            .collect(Collectors.toList());
+
+        ClientRedirect clientRedirect = new ClientRedirect();
+        clientRedirect.setClientId(StringUtils.hasText(batch.getClientId()) ? batch.getClientId() : DEFAULT_CLIENT_ID);
+        clientRedirect.setRedirectUri(StringUtils.hasText(batch.getRedirectUri()) ? batch.getRedirectUri() : DEFAULT_REDIRECT_URI);
+
+        BatchUtils.parallelMap(keycloakExecutor, recipients, result -> {
+            try {
+                identityService.resetPasswordUserActionNav4(result.getNav4Id(), clientRedirect);
+                result.setResetEmailSent(true);
+            } catch (Exception e) {
+                result.setResetEmailSent(false);
+                result.setMessage(e.getMessage());
+            }
+            return result;
+        });
+    }
+
 }
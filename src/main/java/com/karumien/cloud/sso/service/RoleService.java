@@ -13,8 +13,11 @@
  */
 package com.karumien.cloud.sso.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.keycloak.admin.client.resource.GroupResource;
 import org.keycloak.admin.client.resource.RoleResource;
@@ -22,6 +25,8 @@ import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 
 import com.karumien.cloud.sso.api.model.RoleInfo;
+import com.karumien.cloud.sso.internal.Catalog;
+import com.karumien.cloud.sso.internal.RoleGraph;
 
 /**
  * Service provides informations about identity Roles.
@@ -115,11 +120,36 @@ public interface RoleService {
 
     List<String> getIdentityRoles(UserRepresentation userRepresentation);
 
+    /**
+     * Returns effective roles of more identities. In database read mode roles assigned to all identities are loaded by one
+     * query and expanded by in-memory role graph, otherwise they are loaded from KeyCloak in parallel with bounded
+     * concurrency.
+     * 
+     * @param userRepresentations
+     *            loaded Identities
+     * @return {@link Map} Identity ID to {@link List} of role IDs
+     */
+    Map<String, List<String>> getIdentitiesRoles(List<UserRepresentation> userRepresentations);
+
     List<RoleInfo> getRoles();
 
+    /**
+     * Returns roles translated by current locale with content version, built once per roles snapshot.
+     * 
+     * @return {@link Catalog} of {@link RoleInfo} roles
+     */
+    Catalog<List<RoleInfo>> getRolesCatalog();
+
     List<String> getIdentityRights(String contactNumber);
 
     List<RoleInfo> getRights();
+
+    /**
+     * Returns rights translated by current locale with content version, built once per roles snapshot.
+     * 
+     * @return {@link Catalog} of {@link RoleInfo} rights
+     */
+    Catalog<List<RoleInfo>> getRightsCatalog();
     
     default boolean isRole(String name) {
         return !name.endsWith("_R") && !name.endsWith("_W") && !name.endsWith("_D") && !name.endsWith("_IE");
@@ -127,4 +157,43 @@ public interface RoleService {
 
 	Optional<RoleRepresentation> findRoleRepresentation(String roleId);
 
+    /**
+     * Returns snapshot of realm roles with composites and attributes.
+     * 
+     * @return {@link RoleGraph} current role graph
+     */
+    RoleGraph getRoleGraph();
+
+    /**
+     * Reload role graph from KeyCloak (roles changed out of this service), previous graph is kept on failure.
+     */
+    void refreshRoleGraph();
+
+    /**
+     * Expands roles by composites of current role graph (in memory, no KeyCloak or database call once graph is loaded).
+     * 
+     * @param roleNames
+     *            assigned role names, roles unknown to graph are kept as they are
+     * @return sorted {@link Set} of effective role and right names
+     */
+    Set<String> expandRoles(Collection<String> roleNames);
+
+    /**
+     * Returns binary mask of identity computed as OR of {@value #ATTR_BINARY_MASK} of its effective roles.
+     * 
+     * @param userRepresentation
+     *            loaded Identity
+     * @return String mask of <code>0</code> and <code>1</code> or <code>null</code> when no role has mask
+     */
+    String getIdentityBinaryMask(UserRepresentation userRepresentation);
+
+    /**
+     * Returns binary mask of identity computed as OR of {@value #ATTR_BINARY_MASK} of its effective roles.
+     * 
+     * @param contactNumber
+     *            unique Identity CRM ID
+     * @return String mask of <code>0</code> and <code>1</code> or <code>null</code> when no role has mask
+     */
+    String getIdentityBinaryMask(String contactNumber);
+
 }
\ No newline at end of file
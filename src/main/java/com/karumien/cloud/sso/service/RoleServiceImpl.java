@@ -13,12 +13,25 @@
  */
 package com.karumien.cloud.sso.service;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
 import javax.ws.rs.NotFoundException;
 
 import org.keycloak.admin.client.Keycloak;
@@ -27,16 +40,31 @@ import org.keycloak.admin.client.resource.RoleResource;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.topic.ITopic;
+import com.karumien.cloud.sso.CacheConfiguration;
+import com.karumien.cloud.sso.api.entity.RoleAttribute;
 import com.karumien.cloud.sso.api.model.RoleInfo;
+import com.karumien.cloud.sso.api.repository.RoleAttributeRepository;
+import com.karumien.cloud.sso.api.repository.RoleEntityRepository;
 import com.karumien.cloud.sso.exceptions.ClientNotFoundException;
 import com.karumien.cloud.sso.exceptions.IdentityNotFoundException;
 import com.karumien.cloud.sso.exceptions.RoleNotFoundException;
+import com.karumien.cloud.sso.internal.Catalog;
+import com.karumien.cloud.sso.internal.RightsIndex;
+import com.karumien.cloud.sso.internal.RoleGraph;
+import com.karumien.cloud.sso.util.BatchUtils;
+
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Implementation {@link RuleService} for identity management.
@@ -44,6 +72,7 @@ import com.karumien.cloud.sso.exceptions.RoleNotFoundException;
  * @author <a href="viliam.litavec@karumien.com">Viliam Litavec</a>
  * @since 1.0, 22. 8. 2019 18:59:57
  */
+@Slf4j
 @Service
 public class RoleServiceImpl implements RoleService {
 	
@@ -62,10 +91,50 @@ public class RoleServiceImpl implements RoleService {
     @Autowired
     private LocalizationService localizationService;
 
+    @Autowired
+    @Qualifier("keycloakExecutor")
+    private ExecutorService keycloakExecutor;
+
+    @Autowired
+    private RoleEntityRepository roleEntityRepository;
+
+    @Autowired
+    private RoleAttributeRepository roleAttributeRepository;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Value("${keycloak.read-mode:" + IdentityServiceImpl.READ_MODE_DATABASE + "}")
+    private String readMode;
+
+    @Autowired
+    private HazelcastInstance hazelcastInstance;
+
+    private ITopic<String> roleChanges;
+
+    private volatile RoleGraph roleGraph;
+
+    /**
+     * Subscribe to role changes of other replicas, changed role is reloaded in local role graph.
+     */
+    @PostConstruct
+    public void subscribeRoleChanges() {
+        roleChanges = hazelcastInstance.getTopic(CacheConfiguration.ROLE_CHANGES);
+        roleChanges.addMessageListener(message -> {
+            if (!message.getPublishingMember().localMember()) {
+                refreshRole(message.getMessageObject());
+            }
+        });
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfiguration.ACCOUNT_ROLES, allEntries = true)
     public RoleInfo createRole(RoleInfo role) {
 
         RoleRepresentation roleRepresentation = new RoleRepresentation();
@@ -79,6 +148,9 @@ public class RoleServiceImpl implements RoleService {
         // return getClientsRoleBaseOnId(role.getRoleId(), role.getClientId());
         // } else {
         keycloak.realm(realm).roles().create(roleRepresentation);
+        RoleRepresentation created = keycloak.realm(realm).roles().get(role.getRoleId()).toRepresentation();
+        updateRoleGraph(graph -> graph.with(mapping(created, null)));
+        roleChanges.publish(role.getRoleId());
         return getRoleBaseOnId(role.getRoleId());
         // }
     }
@@ -87,11 +159,15 @@ public class RoleServiceImpl implements RoleService {
      * {@inheritDoc}
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfiguration.ACCOUNT_ROLES, allEntries = true)
     public void deleteRole(String roleId) {
         try {
             keycloak.realm(realm).roles().deleteRole(roleId);
         } catch (NotFoundException e) {
             throw new RoleNotFoundException(roleId);
+        } finally {
+            updateRoleGraph(graph -> graph.without(roleId));
+            roleChanges.publish(roleId);
         }
     }
 
@@ -99,9 +175,16 @@ public class RoleServiceImpl implements RoleService {
      * {@inheritDoc}
      */
     @Override
-    public RoleInfo getRoleBaseOnId(String roleId) {    	
-        RoleRepresentation role = findRoleRepresentation(roleId).orElseThrow(() -> new RoleNotFoundException(roleId));
-        return transformRoleToBaseRole(role, findRoleResource(roleId).getRoleComposites()); 
+    public RoleInfo getRoleBaseOnId(String roleId) {
+        RoleGraph graph = getRoleGraph();
+        Optional<RoleGraph.Role> role = graph.findRole(roleId);
+        if (role.isPresent()) {
+            return mapping(graph, role.get(), true);
+        }
+
+        // role created out of this service and not yet in role graph
+        RoleRepresentation roleRepresentation = findRoleRepresentation(roleId).orElseThrow(() -> new RoleNotFoundException(roleId));
+        return transformRoleToBaseRole(roleRepresentation, findRoleResource(roleId).getRoleComposites());
     }
     
     /**
@@ -130,24 +213,64 @@ public class RoleServiceImpl implements RoleService {
      */
     @Override
     public List<String> getIdentityRoles(UserRepresentation userRepresentation) {
+        if (isDatabaseReadMode()) {
+            return getEffective(userRepresentation, RightsIndex::getRoles);
+        }
         return keycloak.realm(realm).users().get(userRepresentation.getId()).roles().realmLevel().listEffective().stream()
             .filter(r -> isRole(r.getName()))
             .map(r -> r.getName())
             .collect(Collectors.toList());
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, List<String>> getIdentitiesRoles(List<UserRepresentation> userRepresentations) {
+        if (isDatabaseReadMode()) {
+            return getEffective(userRepresentations.stream().map(UserRepresentation::getId).collect(Collectors.toList()), RightsIndex::getRoles);
+        }
+        List<List<String>> roles = BatchUtils.parallelMap(keycloakExecutor, userRepresentations, this::getIdentityRoles);
+        Map<String, List<String>> identitiesRoles = new HashMap<>();
+        for (int i = 0; i < userRepresentations.size(); i++) {
+            identitiesRoles.put(userRepresentations.get(i).getId(), roles.get(i));
+        }
+        return identitiesRoles;
+    }
+
     protected List<String> getIdentityRights(UserRepresentation userRepresentation) {
-        return keycloak.realm(realm).users().get(userRepresentation.getId()).roles().realmLevel().listEffective().stream()
-            .filter(r -> !isRole(r.getName()))
-            .map(r -> r.getName())
-            .collect(Collectors.toList());
-    }    
+        return getEffective(userRepresentation, RightsIndex::getRights);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getIdentityBinaryMask(UserRepresentation userRepresentation) {
+        return getEffective(userRepresentation, RightsIndex::getBinaryMask);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getIdentityBinaryMask(String contactNumber) {
+        if (isDatabaseReadMode()) {
+            return getEffective(identityService.findIdentityId(contactNumber).orElseThrow(() -> new IdentityNotFoundException(contactNumber)),
+                RightsIndex::getBinaryMask);
+        }
+        return getIdentityBinaryMask(identityService.findIdentity(contactNumber).orElseThrow(() -> new IdentityNotFoundException(contactNumber)));
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
     public List<String> getIdentityRolesNav4(String nav4Id) {
+        if (isDatabaseReadMode()) {
+            return getEffective(identityService.findIdentityIdNav4(nav4Id).orElseThrow(() -> new IdentityNotFoundException("nav4Id = " + nav4Id)),
+                RightsIndex::getRoles);
+        }
         return getIdentityRoles(identityService.findIdentityNav4(nav4Id).orElseThrow(() -> new IdentityNotFoundException("nav4Id = " + nav4Id)));
     }
 
@@ -156,6 +279,10 @@ public class RoleServiceImpl implements RoleService {
      */
     @Override
     public List<String> getIdentityRoles(String contactNumber) {
+        if (isDatabaseReadMode()) {
+            return getEffective(identityService.findIdentityId(contactNumber).orElseThrow(() -> new IdentityNotFoundException(contactNumber)),
+                RightsIndex::getRoles);
+        }
         return getIdentityRoles(identityService.findIdentity(contactNumber).orElseThrow(() -> new IdentityNotFoundException(contactNumber)));
     }
     
@@ -164,6 +291,10 @@ public class RoleServiceImpl implements RoleService {
      */
     @Override
     public List<String> getIdentityRights(String contactNumber) {
+        if (isDatabaseReadMode()) {
+            return getEffective(identityService.findIdentityId(contactNumber).orElseThrow(() -> new IdentityNotFoundException(contactNumber)),
+                RightsIndex::getRights);
+        }
         return getIdentityRights(identityService.findIdentity(contactNumber).orElseThrow(() -> new IdentityNotFoundException(contactNumber)));
     }
 
@@ -210,8 +341,9 @@ public class RoleServiceImpl implements RoleService {
     @Override
     public List<RoleInfo> getAccountRoles(GroupResource groupResource, boolean effective) {
         List<RoleRepresentation> roles = getAccountRolesRepresentation(groupResource, effective);
+        RoleGraph graph = getRoleGraph();
         return roles.stream()
-            .map(role -> getRoleBaseOnId(role.getName()))
+            .map(role -> graph.findRole(role.getName()).map(r -> mapping(graph, r, true)).orElseGet(() -> getRoleBaseOnId(role.getName())))
             .collect(Collectors.toList());
     }
     
@@ -219,12 +351,17 @@ public class RoleServiceImpl implements RoleService {
      * {@inheritDoc}
      */
     @Override
-    @Cacheable
     public List<RoleInfo> getRoles() {
-        return keycloak.realm(realm).roles().list().stream()
-            .filter(r -> isRole(r.getName()))
-            .map(role -> transformRoleToBaseRole(keycloak.realm(realm).rolesById().getRole(role.getId()), null))
-            .collect(Collectors.toList());
+        return getRoles(getRoleGraph(), true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Catalog<List<RoleInfo>> getRolesCatalog() {
+        return getRoleGraph().getCatalog("roles:" + LocaleContextHolder.getLocale().getLanguage(),
+            graph -> Catalog.of(mapper, Collections.unmodifiableList(getRoles(graph, true)), graph.getCreated()));
     }
 
     /**
@@ -232,9 +369,22 @@ public class RoleServiceImpl implements RoleService {
      */
     @Override
     public List<RoleInfo> getRights() {
-        return keycloak.realm(realm).roles().list().stream()
-            .filter(r -> !isRole(r.getName()))
-            .map(role -> transformRoleToBaseRole(role, null))
+        return getRoles(getRoleGraph(), false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Catalog<List<RoleInfo>> getRightsCatalog() {
+        return getRoleGraph().getCatalog("rights:" + LocaleContextHolder.getLocale().getLanguage(),
+            graph -> Catalog.of(mapper, Collections.unmodifiableList(getRoles(graph, false)), graph.getCreated()));
+    }
+
+    private List<RoleInfo> getRoles(RoleGraph graph, boolean roles) {
+        return graph.getRoles().stream()
+            .filter(r -> isRole(r.getName()) == roles)
+            .map(role -> mapping(graph, role, false))
             .collect(Collectors.toList());
     }
 
@@ -262,5 +412,189 @@ public class RoleServiceImpl implements RoleService {
         return rights.stream().collect(Collectors.toList());
         
     }
-    
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RoleGraph getRoleGraph() {
+        RoleGraph graph = roleGraph;
+        if (graph == null) {
+            synchronized (this) {
+                if (roleGraph == null) {
+                    roleGraph = loadRoleGraph();
+                }
+                graph = roleGraph;
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Scheduled full reload reconciles changes made directly in KeyCloak, changes made by replicas of this service are
+     * applied per role by {@link #refreshRole(String)}.
+     */
+    @Override
+    @Scheduled(initialDelayString = "${keycloak.role-graph.refresh-interval:300000}", fixedDelayString = "${keycloak.role-graph.refresh-interval:300000}")
+    public void refreshRoleGraph() {
+        try {
+            RoleGraph loaded = loadRoleGraph();
+            synchronized (this) {
+                // keep current snapshot (and its translations) when nothing changed
+                if (!loaded.isSame(roleGraph)) {
+                    roleGraph = loaded;
+                    log.info("Role graph of realm {} reloaded, {} roles", realm, loaded.getRoles().size());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Can't reload role graph of realm {}, using previous one: {}", realm, e.getMessage());
+        }
+    }
+
+    /**
+     * Reload one role (with its composites) in role graph, role not found in KeyCloak is removed from graph.
+     * 
+     * @param roleId
+     *            name of changed role
+     */
+    protected void refreshRole(String roleId) {
+        try {
+            RoleResource roleResource = keycloak.realm(realm).roles().get(roleId);
+            RoleRepresentation role = roleResource.toRepresentation();
+            Set<RoleRepresentation> composites = Boolean.TRUE.equals(role.isComposite()) ? roleResource.getRoleComposites() : null;
+            updateRoleGraph(graph -> graph.with(mapping(role, composites)));
+            log.info("Role {} of realm {} reloaded", roleId, realm);
+        } catch (NotFoundException e) {
+            updateRoleGraph(graph -> graph.without(roleId));
+            log.info("Role {} of realm {} deleted, removed from role graph", roleId, realm);
+        } catch (Exception e) {
+            log.warn("Can't reload role {} of realm {}, reloading role graph: {}", roleId, realm, e.getMessage());
+            refreshRoleGraph();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> expandRoles(Collection<String> roleNames) {
+        RightsIndex index = getRightsIndex();
+        Set<String> expanded = new TreeSet<>(roleNames);
+        expanded.addAll(index.getNames(index.getEffective(roleNames)));
+        return expanded;
+    }
+
+    private RightsIndex getRightsIndex() {
+        return getRoleGraph().getRightsIndex(this::isRole);
+    }
+
+    /**
+     * Select roles or rights from effective bits of identities, bits and selection use the same index.
+     */
+    private <T> Map<String, T> getEffective(Collection<String> userIds, BiFunction<RightsIndex, BitSet, T> selector) {
+        Map<String, Set<String>> userRoles = searchService.findUserRealmRoles(userIds);
+
+        // role created directly in KeyCloak and not yet in role graph is loaded before computing
+        RightsIndex loaded = getRightsIndex();
+        Set<String> unknown = userRoles.values().stream().flatMap(Set::stream)
+            .filter(role -> loaded.indexOf(role) < 0)
+            .collect(Collectors.toCollection(TreeSet::new));
+        if (!unknown.isEmpty()) {
+            log.info("Roles {} of realm {} not in role graph, reloading", unknown, realm);
+            unknown.forEach(this::refreshRole);
+        }
+
+        RightsIndex index = unknown.isEmpty() ? loaded : getRightsIndex();
+        Map<String, T> effective = new HashMap<>();
+        userRoles.forEach((userId, roles) -> effective.put(userId, selector.apply(index, index.getEffective(roles))));
+        return effective;
+    }
+
+    private <T> T getEffective(String userId, BiFunction<RightsIndex, BitSet, T> selector) {
+        return getEffective(Collections.singletonList(userId), selector).get(userId);
+    }
+
+    private <T> T getEffective(UserRepresentation userRepresentation, BiFunction<RightsIndex, BitSet, T> selector) {
+        if (isDatabaseReadMode()) {
+            return getEffective(userRepresentation.getId(), selector);
+        }
+        List<String> effective = keycloak.realm(realm).users().get(userRepresentation.getId()).roles().realmLevel().listEffective().stream()
+            .map(RoleRepresentation::getName)
+            .collect(Collectors.toList());
+        RightsIndex index = getRightsIndex();
+        return selector.apply(index, index.getEffective(effective));
+    }
+
+    private boolean isDatabaseReadMode() {
+        return IdentityServiceImpl.READ_MODE_DATABASE.equalsIgnoreCase(readMode);
+    }
+
+    private synchronized void updateRoleGraph(UnaryOperator<RoleGraph> change) {
+        if (roleGraph != null) {
+            roleGraph = change.apply(roleGraph);
+        }
+    }
+
+    private RoleGraph loadRoleGraph() {
+
+        if (!isDatabaseReadMode()) {
+            List<RoleRepresentation> roles = keycloak.realm(realm).roles().list(false);
+            List<Set<RoleRepresentation>> composites = BatchUtils.parallelMap(keycloakExecutor, roles,
+                role -> Boolean.TRUE.equals(role.isComposite()) ? keycloak.realm(realm).rolesById().getRoleComposites(role.getId()) : null);
+            List<RoleGraph.Role> nodes = new ArrayList<>(roles.size());
+            for (int i = 0; i < roles.size(); i++) {
+                nodes.add(mapping(roles.get(i), composites.get(i)));
+            }
+            nodes.sort(Comparator.comparing(RoleGraph.Role::getName));
+            return new RoleGraph(nodes);
+        }
+
+        Map<String, Map<String, List<String>>> attributes = new HashMap<>();
+        for (RoleAttribute attribute : roleAttributeRepository.findRealmRoleAttributes(realm)) {
+            attributes.computeIfAbsent(attribute.getRoleId(), id -> new HashMap<>())
+                .computeIfAbsent(attribute.getName(), name -> new ArrayList<>()).add(attribute.getValue());
+        }
+
+        Map<String, List<String>> composites = new HashMap<>();
+        for (Object[] edge : roleEntityRepository.findRealmCompositeNames(realm)) {
+            composites.computeIfAbsent((String) edge[0], name -> new ArrayList<>()).add((String) edge[1]);
+        }
+
+        return new RoleGraph(roleEntityRepository.findRealmRoles(realm).stream()
+            .map(role -> new RoleGraph.Role(role.getId(), role.getName(), role.getDescription(),
+                attributes.getOrDefault(role.getId(), Collections.emptyMap()),
+                composites.getOrDefault(role.getName(), Collections.emptyList())))
+            .collect(Collectors.toList()));
+    }
+
+    private RoleGraph.Role mapping(RoleRepresentation role, Set<RoleRepresentation> composites) {
+        return new RoleGraph.Role(role.getId(), role.getName(), role.getDescription(),
+            role.getAttributes() == null ? Collections.emptyMap() : role.getAttributes(),
+            composites == null ? Collections.emptyList() : composites.stream().map(RoleRepresentation::getName).sorted().collect(Collectors.toList()));
+    }
+
+    private RoleInfo mapping(RoleGraph graph, RoleGraph.Role role, boolean withRights) {
+        RoleInfo roleInfo = new RoleInfo();
+        roleInfo.setRoleId(role.getName());
+        roleInfo.setDescription(role.getDescription());
+
+        if (withRights) {
+            List<String> rightKeys = role.getComposites().stream()
+                .filter(r -> !isRole(r))
+                .collect(Collectors.toList());
+            roleInfo.setRights(CollectionUtils.isEmpty(rightKeys) ? null : rightKeys);
+        }
+
+        Locale locale = LocaleContextHolder.getLocale();
+        roleInfo.setTranslation(graph.getTranslations(locale.getLanguage(), g -> {
+            Map<String, String> translations = new HashMap<>();
+            g.getRoles().forEach(r -> translations.put(r.getName(),
+                localizationService.translate("role." + r.getName().toLowerCase(), r.getAttributes(), locale, r.getDescription())));
+            return translations;
+        }).get(role.getName()));
+        return roleInfo;
+    }
+
 }
@@ -6,14 +6,19 @@
  */
 package com.karumien.cloud.sso.service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+
+import org.keycloak.representations.idm.UserRepresentation;
 
 import org.springframework.util.CollectionUtils;
 
 import com.karumien.cloud.sso.api.model.AccountPropertyType;
 import com.karumien.cloud.sso.api.model.IdentityPropertyType;
+import com.karumien.cloud.sso.api.model.IdentityState;
 
 /**
  * Search Service for direct immutable access to KeyCloak DB for performance searching.
@@ -82,7 +87,73 @@ public interface SearchService {
      */
     String getMasterGroupId(String masterGroup);
 
-    Optional<String> findBinaryMaskForRole(String roleId);
-
     List<String> getValueByAttributeOfUserId(IdentityPropertyType attribute, String userId);
+
+    /**
+     * Load Users directly from KeyCloak DB (USER_ENTITY, USER_ATTRIBUTE) with set-based queries.
+     * 
+     * @param userIds
+     *            User's IDs
+     * @return {@link List} of {@link UserRepresentation} in order of {@code userIds}, missing users are skipped
+     */
+    List<UserRepresentation> findUserRepresentationsByIds(Collection<String> userIds);
+
+    /**
+     * Filter Users which have password credentials in one query.
+     * 
+     * @param userIds
+     *            User's IDs
+     * @return {@link Set} of User's IDs with credentials
+     */
+    Set<String> findUserIdsWithCredentials(Collection<String> userIds);
+
+    /**
+     * Load realm roles assigned to Users directly (without groups and composites).
+     * 
+     * @param userIds
+     *            User's IDs
+     * @return {@link Map} User's ID to {@link Set} of role names (every requested user is present)
+     */
+    Map<String, Set<String>> findUserDirectRealmRoles(Collection<String> userIds);
+
+    /**
+     * Load realm roles assigned to Users directly or by their groups (including parent groups), composites are not expanded.
+     * 
+     * @param userIds
+     *            User's IDs
+     * @return {@link Map} User's ID to {@link Set} of role names (every requested user is present)
+     */
+    Map<String, Set<String>> findUserRealmRoles(Collection<String> userIds);
+
+    /**
+     * Search Users by UserAttribute name and multiple values in one query.
+     * 
+     * @param attribute
+     *            attribute name ie. contactNumber
+     * @param values
+     *            values of attribute
+     * @return {@link Map} value to {@link List} of User's IDs, values without users are skipped
+     */
+    Map<String, List<String>> findUserIdsByAttributeValues(IdentityPropertyType attribute, Collection<String> values);
+
+    /**
+     * Search Users by UserAttribute name and multiple values and resolve their states in SQL 
+     * (same rules as {@link IdentityService#mappingIdentityState(UserRepresentation)}).
+     * 
+     * @param attribute
+     *            attribute name ie. nav4Id
+     * @param values
+     *            values of attribute
+     * @return {@link Map} value to {@link Map} User's ID to {@link IdentityState}, values without users are skipped
+     */
+    Map<String, Map<String, IdentityState>> findIdentityStatesByAttributeValues(IdentityPropertyType attribute, Collection<String> values);
+
+    /**
+     * Search Users by all criteria in one query.
+     * 
+     * @param searchFilter
+     *            criteria, all of them must match
+     * @return {@link List} of User's IDs
+     */
+    List<String> findUserIds(Map<IdentityPropertyType, String> searchFilter);
 }
@@ -8,26 +8,45 @@ package com.karumien.cloud.sso.service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.keycloak.representations.idm.UserRepresentation;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import com.karumien.cloud.sso.CacheConfiguration;
 import com.karumien.cloud.sso.api.entity.AccountEntity;
+import com.karumien.cloud.sso.api.entity.UserAttribute;
 import com.karumien.cloud.sso.api.entity.UserEntity;
 import com.karumien.cloud.sso.api.model.AccountPropertyType;
 import com.karumien.cloud.sso.api.model.IdentityPropertyType;
+import com.karumien.cloud.sso.api.model.IdentityState;
 import com.karumien.cloud.sso.api.repository.AccountEntityRepository;
 import com.karumien.cloud.sso.api.repository.CredentialRepository;
 import com.karumien.cloud.sso.api.repository.GroupEntityRepository;
-import com.karumien.cloud.sso.api.repository.RoleAttributeRepository;
+import com.karumien.cloud.sso.api.repository.GroupRoleMappingRepository;
+import com.karumien.cloud.sso.api.repository.IdentitySearchSpecification;
 import com.karumien.cloud.sso.api.repository.UserAttributeRepository;
 import com.karumien.cloud.sso.api.repository.UserEntityRepository;
+import com.karumien.cloud.sso.api.repository.UserGroupMembershipRepository;
+import com.karumien.cloud.sso.api.repository.UserRoleMappingRepository;
 import com.karumien.cloud.sso.exceptions.AccountNotFoundException;
+import com.karumien.cloud.sso.util.BatchUtils;
 
 /**
  * Implementation of {@link SearchService}.
@@ -38,6 +57,9 @@ import com.karumien.cloud.sso.exceptions.AccountNotFoundException;
 @Service
 public class SearchServiceImpl implements SearchService {
 
+    /** Maximal count of parameters in one SQL IN clause */
+    private static final int IN_CLAUSE_SIZE = 1000;
+
     @Autowired
     private UserAttributeRepository userAttributeRepository;
 
@@ -54,7 +76,13 @@ public class SearchServiceImpl implements SearchService {
     private AccountEntityRepository accountEntityRepository;
 
     @Autowired
-    private RoleAttributeRepository roleAttributeRepository;
+    private UserRoleMappingRepository userRoleMappingRepository;
+
+    @Autowired
+    private UserGroupMembershipRepository userGroupMembershipRepository;
+
+    @Autowired
+    private GroupRoleMappingRepository groupRoleMappingRepository;
     
     @Value("${keycloak.realm}")
     private String realm;
@@ -159,6 +187,7 @@ public class SearchServiceImpl implements SearchService {
      */
     @Override
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfiguration.MASTER_GROUP_ID)
     public String getMasterGroupId(String masterGroup) {
         return groupEntityRepository.findGroupIdsByName(masterGroup, realm).stream()
             .findFirst().orElseThrow(() -> new AccountNotFoundException("NAME: " + masterGroup));
@@ -169,7 +198,187 @@ public class SearchServiceImpl implements SearchService {
      */
     @Override
     @Transactional(readOnly = true)
-    public Optional<String> findBinaryMaskForRole(String roleId) {
-        return roleAttributeRepository.findBinaryMaskForRole(roleId).stream().findFirst();
+    public List<UserRepresentation> findUserRepresentationsByIds(Collection<String> userIds) {
+
+        if (CollectionUtils.isEmpty(userIds)) {
+            return new ArrayList<>();
+        }
+
+        Map<String, UserRepresentation> users = new HashMap<>();
+        for (List<String> chunk : BatchUtils.partition(new ArrayList<>(new HashSet<>(userIds)), IN_CLAUSE_SIZE)) {
+            for (UserEntity user : userEntityRepository.findByUserIds(chunk)) {
+                users.put(user.getUserId(), mapping(user));
+            }
+            for (UserAttribute attribute : userAttributeRepository.findByUserIds(chunk)) {
+                UserRepresentation user = users.get(attribute.getUser().getUserId());
+                user.getAttributes().computeIfAbsent(attribute.getName(), name -> new ArrayList<>()).add(attribute.getValue());
+            }
+        }
+
+        return userIds.stream().distinct().map(users::get).filter(u -> u != null).collect(Collectors.toList());
+    }
+
+    private UserRepresentation mapping(UserEntity user) {
+        UserRepresentation userRepresentation = new UserRepresentation();
+        userRepresentation.setId(user.getUserId());
+        userRepresentation.setUsername(user.getUsername());
+        userRepresentation.setFirstName(user.getFirstName());
+        userRepresentation.setLastName(user.getLastName());
+        userRepresentation.setEmail(user.getEmail());
+        userRepresentation.setEmailVerified(Boolean.TRUE.equals(user.getEmailVerified()));
+        userRepresentation.setEnabled(Boolean.TRUE.equals(user.getEnabled()));
+        userRepresentation.setCreatedTimestamp(user.getCreatedTimestamp());
+        userRepresentation.setAttributes(new LinkedHashMap<>());
+        return userRepresentation;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Set<String> findUserIdsWithCredentials(Collection<String> userIds) {
+        Set<String> withCredentials = new HashSet<>();
+        if (!CollectionUtils.isEmpty(userIds)) {
+            for (List<String> chunk : BatchUtils.partition(new ArrayList<>(new HashSet<>(userIds)), IN_CLAUSE_SIZE)) {
+                withCredentials.addAll(credentialRepository.findUserIdsByUserIdsAndType(chunk, "password"));
+            }
+        }
+        return withCredentials;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Set<String>> findUserDirectRealmRoles(Collection<String> userIds) {
+
+        Map<String, Set<String>> userRoles = new HashMap<>();
+        if (CollectionUtils.isEmpty(userIds)) {
+            return userRoles;
+        }
+
+        List<String> ids = new ArrayList<>(new HashSet<>(userIds));
+        ids.forEach(id -> userRoles.put(id, new HashSet<>()));
+        for (List<String> chunk : BatchUtils.partition(ids, IN_CLAUSE_SIZE)) {
+            for (Object[] mapping : userRoleMappingRepository.findRealmRoleNamesByUserIds(chunk)) {
+                userRoles.get((String) mapping[0]).add((String) mapping[1]);
+            }
+        }
+        return userRoles;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Set<String>> findUserRealmRoles(Collection<String> userIds) {
+
+        Map<String, Set<String>> userRoles = new HashMap<>();
+        if (CollectionUtils.isEmpty(userIds)) {
+            return userRoles;
+        }
+
+        List<String> ids = new ArrayList<>(new HashSet<>(userIds));
+        ids.forEach(id -> userRoles.put(id, new HashSet<>()));
+
+        Map<String, Set<String>> userGroups = new HashMap<>();
+        for (List<String> chunk : BatchUtils.partition(ids, IN_CLAUSE_SIZE)) {
+            for (Object[] mapping : userRoleMappingRepository.findRealmRoleNamesByUserIds(chunk)) {
+                userRoles.get((String) mapping[0]).add((String) mapping[1]);
+            }
+            for (Object[] membership : userGroupMembershipRepository.findGroupIdsByUserIds(chunk)) {
+                userGroups.computeIfAbsent((String) membership[0], id -> new HashSet<>()).add((String) membership[1]);
+            }
+        }
+
+        if (userGroups.isEmpty()) {
+            return userRoles;
+        }
+
+        // group roles are inherited by subgroups, resolve parents level by level
+        Map<String, String> parents = new HashMap<>();
+        Set<String> groupIds = new HashSet<>();
+        userGroups.values().forEach(groupIds::addAll);
+        Set<String> unresolved = new HashSet<>(groupIds);
+        while (!unresolved.isEmpty()) {
+            Set<String> next = new HashSet<>();
+            for (List<String> chunk : BatchUtils.partition(new ArrayList<>(unresolved), IN_CLAUSE_SIZE)) {
+                for (Object[] group : groupEntityRepository.findParentIdsByIds(chunk)) {
+                    String parent = (String) group[1];
+                    if (StringUtils.hasText(parent) && !parents.containsKey((String) group[0])) {
+                        parents.put((String) group[0], parent);
+                        if (groupIds.add(parent)) {
+                            next.add(parent);
+                        }
+                    }
+                }
+            }
+            unresolved = next;
+        }
+
+        Map<String, Set<String>> groupRoles = new HashMap<>();
+        for (List<String> chunk : BatchUtils.partition(new ArrayList<>(groupIds), IN_CLAUSE_SIZE)) {
+            for (Object[] mapping : groupRoleMappingRepository.findRealmRoleNamesByGroupIds(chunk)) {
+                groupRoles.computeIfAbsent((String) mapping[0], id -> new HashSet<>()).add((String) mapping[1]);
+            }
+        }
+
+        userGroups.forEach((userId, groups) -> {
+            for (String groupId : groups) {
+                for (String id = groupId; id != null; id = parents.get(id)) {
+                    userRoles.get(userId).addAll(groupRoles.getOrDefault(id, Collections.emptySet()));
+                }
+            }
+        });
+
+        return userRoles;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, List<String>> findUserIdsByAttributeValues(IdentityPropertyType attribute, Collection<String> values) {
+        Map<String, List<String>> userIds = new HashMap<>();
+        if (!CollectionUtils.isEmpty(values)) {
+            for (List<String> chunk : BatchUtils.partition(new ArrayList<>(new HashSet<>(values)), IN_CLAUSE_SIZE)) {
+                userAttributeRepository.findByAttributeValues(attribute.getValue(), chunk)
+                    .forEach(ua -> userIds.computeIfAbsent(ua.getValue(), value -> new ArrayList<>()).add(ua.getUser().getUserId()));
+            }
+        }
+        return userIds;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Map<String, IdentityState>> findIdentityStatesByAttributeValues(IdentityPropertyType attribute, Collection<String> values) {
+        Map<String, Map<String, IdentityState>> states = new HashMap<>();
+        if (!CollectionUtils.isEmpty(values)) {
+            for (List<String> chunk : BatchUtils.partition(new ArrayList<>(new HashSet<>(values)), IN_CLAUSE_SIZE)) {
+                for (Object[] row : userAttributeRepository.findIdentityStatesByAttributeValues(attribute.getValue(), chunk, 
+                        IdentityPropertyType.ATTR_LAST_LOGIN.getValue())) {
+                    IdentityState state = ((Number) row[2]).longValue() == 0 ? IdentityState.CREATED 
+                        : ((Number) row[3]).longValue() == 0 ? IdentityState.CREDENTIALS_CREATED : IdentityState.ACTIVE;
+                    states.computeIfAbsent((String) row[0], value -> new LinkedHashMap<>()).put((String) row[1], state);
+                }
+            }
+        }
+        return states;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<String> findUserIds(Map<IdentityPropertyType, String> searchFilter) {
+        return userEntityRepository.findUserIds(new IdentitySearchSpecification(realm, searchFilter));
     }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from 
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.karumien.cloud.sso.internal.CallCounter;
+
+/**
+ * Batch processing Utils.
+ */
+public class BatchUtils {
+
+    /**
+     * Split list to chunks of maximal size (ie. for SQL IN clause).
+     * 
+     * @param items
+     *            source list
+     * @param size
+     *            maximal size of chunk
+     * @return {@link List} of chunks
+     */
+    public static <T> List<List<T>> partition(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += size) {
+            chunks.add(items.subList(i, Math.min(i + size, items.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Map items in parallel on specified executor, concurrency is bounded by executor pool size. 
+     * Order of results is same as order of items, first failure is rethrown and rest of calls is cancelled.
+     * Calls are counted in {@link CallCounter} of caller.
+     * 
+     * @param executor
+     *            bounded executor
+     * @param items
+     *            source items
+     * @param mapper
+     *            mapping function (ie. remote call)
+     * @return {@link List} of mapped results
+     */
+    public static <T, R> List<R> parallelMap(ExecutorService executor, List<T> items, Function<T, R> mapper) {
+
+        if (items.size() < 2) {
+            return items.stream().map(mapper).collect(Collectors.toList());
+        }
+
+        List<Future<R>> futures = items.stream()
+            .map(item -> executor.submit(CallCounter.propagate(() -> mapper.apply(item))))
+            .collect(Collectors.toList());
+
+        List<R> results = new ArrayList<>(items.size());
+        try {
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        return results;
+    }
+
+}
@@ -31,6 +31,21 @@ public class PageableUtils {
             size = 10;
         }
         
+        return PageRequest.of(page, size, getSort(sort, available));
+    }
+
+    /**
+     * Request for search - all rows are returned when no page and size is specified.
+     */
+    public static Pageable getSearchRequest(Integer page, Integer size, List<String> sort, List<String> available) {
+        if (page == null && size == null) {
+            return PageRequest.of(0, Integer.MAX_VALUE, getSort(sort, available));
+        }
+        return getRequest(page, size, sort, available);
+    }
+
+    public static Sort getSort(List<String> sort, List<String> available) {
+
         if (sort == null) {
             sort = new ArrayList<>();
         }
@@ -45,9 +60,8 @@ public class PageableUtils {
                 orders.add(desc ? Order.desc(property) : Order.asc(property));
             }
         }
-        
-        
-        return PageRequest.of(page, size, Sort.by(orders));
+
+        return Sort.by(orders);
     }
 
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from 
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.util;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Stack trace Utils.
+ */
+public class StackTraceUtils {
+
+    /**
+     * Render stack trace in {@link Throwable#printStackTrace()} format (with causes), rendering stops when maximal
+     * length is reached so frames behind the limit are never formatted.
+     * 
+     * @param throwable
+     *            exception
+     * @param maxLength
+     *            maximal length of result
+     * @return truncated stack trace
+     */
+    public static String truncated(Throwable throwable, int maxLength) {
+
+        StringBuilder sb = new StringBuilder(Math.min(maxLength, 1024));
+        Set<Throwable> rendered = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Throwable current = throwable;
+        while (current != null && rendered.add(current) && sb.length() < maxLength) {
+            if (current != throwable) {
+                sb.append("Caused by: ");
+            }
+            sb.append(current).append(System.lineSeparator());
+            for (StackTraceElement element : current.getStackTrace()) {
+                if (sb.length() >= maxLength) {
+                    break;
+                }
+                sb.append("\tat ").append(element).append(System.lineSeparator());
+            }
+            current = current.getCause();
+        }
+
+        if (sb.length() > maxLength) {
+            sb.setLength(maxLength);
+        }
+        return sb.toString();
+    }
+}
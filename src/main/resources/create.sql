@@ -24,14 +24,51 @@ CREATE TABLE PLUGIN_ACCOUNT_MODULE
 CREATE TABLE PLUGIN_REBIRTH
 (
    id varchar(36) NOT NULL,
-   value varchar(3000) NOT NULL,
+   value varchar(3000),
+   payload bytea,
    password varchar(512),
    PRIMARY KEY (id)
 );
 
+-- existing database is upgraded by upgrade.sql
+
+CREATE TABLE PLUGIN_ONBOARDING_JOB
+(
+   id varchar(36) NOT NULL,
+   state varchar(20) NOT NULL,
+   total bigint NOT NULL,
+   committed_offset bigint NOT NULL,
+   created_count bigint NOT NULL,
+   updated_count bigint NOT NULL,
+   exists_count bigint NOT NULL,
+   skipped_count bigint NOT NULL,
+   failed_count bigint NOT NULL,
+   created timestamp NOT NULL,
+   started timestamp,
+   finished timestamp,
+   owner varchar(100),
+   heartbeat timestamp,
+   attempts integer DEFAULT 0 NOT NULL,
+   message varchar(1024),
+   PRIMARY KEY (id)
+);
+
+CREATE TABLE PLUGIN_ONBOARDING_JOB_ITEM
+(
+   job_id varchar(36) NOT NULL,
+   position bigint NOT NULL,
+   value varchar(10000),
+   status varchar(20),
+   message varchar(1024),
+   PRIMARY KEY (job_id, position)
+);
+
 ALTER TABLE PLUGIN_ACCOUNT_MODULE 
 ADD CONSTRAINT fk_plugin_account_account FOREIGN KEY (account_id) REFERENCES PLUGIN_ACCOUNT (id) ON DELETE CASCADE;
 
+ALTER TABLE PLUGIN_ONBOARDING_JOB_ITEM 
+ADD CONSTRAINT fk_plugin_onboarding_job_item_job FOREIGN KEY (job_id) REFERENCES PLUGIN_ONBOARDING_JOB (id) ON DELETE CASCADE;
+
 create view view_account_locales as
 select count(u.id), ua.value as account_id, ul.value as locale from user_entity u 
 left join user_attribute ua on (ua.user_id = u.id and ua.name = 'accountNumber')
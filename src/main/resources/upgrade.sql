@@ -0,0 +1,49 @@
+SET search_path =  keycloak;
+
+-- upgrade of existing database created by older create.sql, statements can be applied repeatedly
+-- (must be applied before deploy of version which maps PLUGIN_REBIRTH.PAYLOAD)
+
+-- PLUGIN_REBIRTH compact skeleton (JSON rows are migrated on first read)
+ALTER TABLE PLUGIN_REBIRTH ADD COLUMN IF NOT EXISTS payload bytea;
+ALTER TABLE PLUGIN_REBIRTH ALTER COLUMN value DROP NOT NULL;
+
+-- rollback: previous release reads VALUE only, migrated rows keep their JSON and stay readable by it,
+-- rows created by this release have PAYLOAD only and are not readable by previous release
+
+-- cleanup (irreversible, run manually once rollback to previous release is not needed):
+-- UPDATE PLUGIN_REBIRTH SET value = NULL WHERE payload IS NOT NULL AND value IS NOT NULL;
+
+-- asynchronous onboarding jobs
+CREATE TABLE IF NOT EXISTS PLUGIN_ONBOARDING_JOB
+(
+   id varchar(36) NOT NULL,
+   state varchar(20) NOT NULL,
+   total bigint NOT NULL,
+   committed_offset bigint NOT NULL,
+   created_count bigint NOT NULL,
+   updated_count bigint NOT NULL,
+   exists_count bigint NOT NULL,
+   skipped_count bigint NOT NULL,
+   failed_count bigint NOT NULL,
+   created timestamp NOT NULL,
+   started timestamp,
+   finished timestamp,
+   owner varchar(100),
+   heartbeat timestamp,
+   attempts integer DEFAULT 0 NOT NULL,
+   message varchar(1024),
+   PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS PLUGIN_ONBOARDING_JOB_ITEM
+(
+   job_id varchar(36) NOT NULL REFERENCES PLUGIN_ONBOARDING_JOB (id) ON DELETE CASCADE,
+   position bigint NOT NULL,
+   value varchar(10000),
+   status varchar(20),
+   message varchar(1024),
+   PRIMARY KEY (job_id, position)
+);
+
+ALTER TABLE PLUGIN_ONBOARDING_JOB ADD COLUMN IF NOT EXISTS attempts integer DEFAULT 0 NOT NULL;
+ALTER TABLE PLUGIN_ONBOARDING_JOB ADD COLUMN IF NOT EXISTS message varchar(1024);
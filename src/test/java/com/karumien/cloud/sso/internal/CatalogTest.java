@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests {@link Catalog}.
+ */
+class CatalogTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void etagByContent() {
+        Catalog<?> catalog = Catalog.of(mapper, Arrays.asList("ADMIN", "USER"), 1000);
+        assertEquals(catalog.getEtag(), Catalog.of(mapper, Arrays.asList("ADMIN", "USER"), 2000).getEtag());
+        assertNotEquals(catalog.getEtag(), Catalog.of(mapper, Arrays.asList("ADMIN"), 1000).getEtag());
+        assertTrue(catalog.getEtag().startsWith("\"") && catalog.getEtag().endsWith("\""));
+    }
+
+    @Test
+    void notModified() {
+        Catalog<?> catalog = Catalog.of(mapper, Arrays.asList("ADMIN", "USER"), 1000);
+        assertTrue(catalog.isNotModified(catalog.getEtag()));
+        assertTrue(catalog.isNotModified("\"old\", W/" + catalog.getEtag()));
+        assertTrue(catalog.isNotModified("*"));
+        assertFalse(catalog.isNotModified("\"old\""));
+        assertFalse(catalog.isNotModified(null));
+    }
+
+    @Test
+    void notModifiedByEtag() {
+        assertTrue(Catalog.isNotModified("\"keys\"", "\"old\", W/\"keys\""));
+        assertFalse(Catalog.isNotModified("\"keys\"", "\"old\""));
+    }
+}
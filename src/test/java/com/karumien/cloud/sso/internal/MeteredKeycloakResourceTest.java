@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.ws.rs.NotFoundException;
+
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Tests {@link MeteredKeycloakResource}.
+ */
+class MeteredKeycloakResourceTest {
+
+    @Test
+    void timedByOperationAndOutcome() {
+        RealmResource realm = mock(RealmResource.class);
+        UsersResource users = mock(UsersResource.class);
+        UserResource user = mock(UserResource.class);
+        when(realm.users()).thenReturn(users);
+        when(users.count()).thenReturn(5);
+        when(users.get("1")).thenReturn(user);
+        when(user.toRepresentation()).thenThrow(new NotFoundException());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RealmResource metered = MeteredKeycloakResource.wrap(realm, RealmResource.class, registry, null);
+
+        assertEquals(5, metered.users().count());
+        assertThrows(NotFoundException.class, () -> metered.users().get("1").toRepresentation());
+
+        assertEquals(1, registry.get(MeteredKeycloakResource.METRIC_CALLS)
+            .tags("operation", "users.count", "outcome", MeteredKeycloakResource.OUTCOME_SUCCESS).timer().count());
+        assertEquals(1, registry.get(MeteredKeycloakResource.METRIC_CALLS)
+            .tags("operation", "user.toRepresentation", "outcome", MeteredKeycloakResource.OUTCOME_CLIENT_ERROR).timer().count());
+        // locators are not timed
+        assertEquals(2, registry.get(MeteredKeycloakResource.METRIC_CALLS).timers().size());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karumien.cloud.sso.api.model.AccountInfo;
+import com.karumien.cloud.sso.api.model.Credentials;
+import com.karumien.cloud.sso.api.model.IdentityInfo;
+import com.karumien.cloud.sso.api.model.OnBoardingInfo;
+
+/**
+ * Tests {@link RebirthCodec}.
+ */
+class RebirthCodecTest {
+
+    private final RebirthCodec codec = new RebirthCodec();
+
+    private static OnBoardingInfo onboarding() {
+        AccountInfo account = new AccountInfo();
+        account.setAccountNumber("100001");
+        account.setName("Karumien s.r.o.");
+        IdentityInfo identity = new IdentityInfo();
+        identity.setNav4Id("1000010001");
+        identity.setContactNumber("C0001");
+        identity.setFirstName("Miroslav");
+        identity.setLastName("Svoboda");
+        identity.setEmail("miroslav.svoboda@karumien.com");
+        Credentials credentials = new Credentials();
+        credentials.setUsername("midie");
+        credentials.setPassword("#123456.");
+        OnBoardingInfo onboarding = new OnBoardingInfo();
+        onboarding.setAccount(account);
+        onboarding.setIdentity(identity);
+        onboarding.setCredentials(credentials);
+        onboarding.setRoles(Arrays.asList("CLIENT_ADMIN", "CLIENT_USER"));
+        onboarding.setNote("20200218-Migration2PROD");
+        return onboarding;
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        OnBoardingInfo onboarding = onboarding();
+        byte[] payload = codec.encode(onboarding);
+        assertEquals(RebirthCodec.VERSION_SMILE_DEFLATE, payload[0]);
+        assertEquals(onboarding, codec.decode(payload));
+    }
+
+    @Test
+    void smallerThanJson() throws IOException {
+        OnBoardingInfo onboarding = onboarding();
+        assertTrue(codec.encode(onboarding).length < new ObjectMapper().setSerializationInclusion(Include.NON_NULL).writeValueAsBytes(onboarding).length);
+    }
+
+    @Test
+    void unsupportedVersion() {
+        assertThrows(IOException.class, () -> codec.decode(new byte[] { 0, 1, 2 }));
+        assertThrows(IOException.class, () -> codec.decode(new byte[0]));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.logstash.logback.marker.LogstashMarker;
+
+/**
+ * Tests {@link RequestLogRecord}.
+ */
+class RequestLogRecordTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @AfterEach
+    void clearMDC() {
+        MDC.clear();
+    }
+
+    @Test
+    void captureAndComplete() throws IOException {
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/1");
+        request.setQueryString("x=1");
+        request.addHeader("x-request-id", "r1");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(404);
+
+        CallCounter counter = CallCounter.start();
+        CallCounter.count(CallCounter.Type.KEYCLOAK);
+        CallCounter.stop();
+
+        RequestLogRecord record = RequestLogRecord.current();
+        assertSame(record, RequestLogRecord.current());
+
+        JsonNode json = json(record.capture(request, "test").putCorrelation().complete(response, counter).putResult().toMarker());
+        assertEquals("test", MDC.get("env"));
+        assertEquals("GET", MDC.get("method"));
+        assertEquals("/users/1", MDC.get("uri"));
+        assertEquals("r1", MDC.get("x-request-id"));
+        assertNull(MDC.get("x-trackingid"));
+        assertEquals("404", MDC.get("status"));
+        assertEquals("1", MDC.get("calls_keycloak"));
+        assertEquals("0", MDC.get("calls_jpa"));
+
+        assertEquals("x=1", json.get("query").asText());
+        assertFalse(json.has("uri"));
+        assertFalse(json.has("x-request-id"));
+        assertFalse(json.has("status"));
+        assertFalse(json.has("user-agent"));
+        assertFalse(json.has("request"));
+    }
+
+    @Test
+    void payloadCredentialsMasked() throws IOException {
+
+        RequestLogRecord record = RequestLogRecord.current();
+        record.capture(new MockHttpServletRequest("POST", "/auth/login"), "test").payload(
+            "{\"username\":\"joe\",\"password\" : \"se\\\"cret\",\"pin\":\"1234\",\"clientSecret\":\"abc",
+            "{\"access_token\":\"eyJ\",\"expires_in\":300,\"refresh_token\":\"eyK\"}");
+
+        JsonNode json = json(record.toMarker());
+        assertEquals("{\"username\":\"joe\",\"password\" : \"***\",\"pin\":\"***\",\"clientSecret\":\"***\"",
+            json.get("request").asText());
+        assertEquals("{\"access_token\":\"***\",\"expires_in\":300,\"refresh_token\":\"***\"}",
+            json.get("response").asText());
+
+        assertEquals("grant_type=password&username=joe&password=***&client_secret=***",
+            RequestLogRecord.mask("grant_type=password&username=joe&password=x%26y&client_secret=s"));
+    }
+
+    @Test
+    void markerIsSnapshot() throws IOException {
+
+        RequestLogRecord record = RequestLogRecord.current();
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setQueryString("x=1");
+        LogstashMarker marker = record.capture(request, "test").toMarker();
+
+        record.capture(new MockHttpServletRequest("GET", "/roles"), "test");
+        record.clear();
+
+        JsonNode json = json(marker);
+        assertEquals("x=1", json.get("query").asText());
+        assertEquals("HTTP/1.1", json.get("protocol").asText());
+        assertFalse(json.has("status"));
+    }
+
+    @Test
+    void exceptionRenderedByStatus() {
+
+        RequestLogRecord record = RequestLogRecord.current();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        IllegalStateException e = new IllegalStateException("failed");
+
+        response.setStatus(410);
+        record.capture(new MockHttpServletRequest("GET", "/accounts/1"), "test").exception(e).complete(response, null).putException(1000);
+        assertEquals("java.lang.IllegalStateException: failed", MDC.get("exception"));
+
+        response.setStatus(500);
+        record.capture(new MockHttpServletRequest("GET", "/accounts/1"), "test").exception(e).complete(response, null).putException(1000);
+        assertTrue(MDC.get("exception").contains("\tat "));
+
+        MDC.clear();
+        record.capture(new MockHttpServletRequest("GET", "/accounts/1"), "test").complete(response, null).putException(1000);
+        assertNull(MDC.get("exception"));
+    }
+
+    private JsonNode json(LogstashMarker marker) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+            generator.writeStartObject();
+            marker.writeTo(generator);
+            generator.writeEndObject();
+        }
+        return mapper.readTree(writer.toString());
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.karumien.cloud.sso.service.RoleService;
+
+/**
+ * Tests {@link RightsIndex}.
+ */
+class RightsIndexTest {
+
+    private static RoleGraph.Role role(String name, String mask, String... composites) {
+        Map<String, List<String>> attributes = mask == null ? Collections.emptyMap()
+            : Collections.singletonMap(RoleService.ATTR_BINARY_MASK, Collections.singletonList(mask));
+        return new RoleGraph.Role(name, name, null, attributes, Arrays.asList(composites));
+    }
+
+    private final RoleGraph graph = new RoleGraph(Arrays.asList(
+        role("ADMIN", null, "USER", "ACCOUNT_W"),
+        role("USER", null, "ACCOUNT_R", "CARD_R"),
+        role("ACCOUNT_R", "1000"),
+        role("ACCOUNT_W", "0100"),
+        role("CARD_R", "001"),
+        role("DRIVER", null)));
+
+    private final RightsIndex index = graph.getRightsIndex(name -> !name.endsWith("_R") && !name.endsWith("_W"));
+
+    @Test
+    void expandsComposites() {
+        BitSet effective = index.getEffective(Arrays.asList("ADMIN", "UNKNOWN"));
+        assertEquals(Arrays.asList("ADMIN", "USER"), index.getRoles(effective));
+        assertEquals(Arrays.asList("ACCOUNT_R", "ACCOUNT_W", "CARD_R"), index.getRights(effective));
+    }
+
+    @Test
+    void binaryMask() {
+        assertEquals("1110", index.getBinaryMask(index.getEffective(Arrays.asList("ADMIN"))));
+        assertEquals("1010", index.getBinaryMask(index.getEffective(Arrays.asList("USER"))));
+        assertNull(index.getBinaryMask(index.getEffective(Arrays.asList("DRIVER"))));
+    }
+}
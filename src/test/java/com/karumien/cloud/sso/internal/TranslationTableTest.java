@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link TranslationTable}.
+ */
+class TranslationTableTest {
+
+    private final TranslationTable table = new TranslationTable(Arrays.asList("sk", "cs", "en"),
+        Arrays.asList("module.fleet", "group.cards"), "translation",
+        (key, locale) -> "module.fleet".equals(key) ? key + "@" + locale.getLanguage() : null);
+
+    @Test
+    void localeIds() {
+        assertEquals(0, table.idOf(Locale.forLanguageTag("cs")));
+        assertEquals(2, table.idOf(Locale.forLanguageTag("sk-SK")));
+        assertEquals(-1, table.idOf(Locale.GERMAN));
+        assertEquals("en", table.getLanguage(table.idOf(Locale.ENGLISH)));
+        assertEquals("translation[sk]", table.getAttribute(table.idOf(Locale.forLanguageTag("sk"))));
+    }
+
+    @Test
+    void messages() {
+        int cs = table.idOf(Locale.forLanguageTag("cs"));
+        assertEquals("module.fleet@cs", table.getMessage("module.fleet", cs));
+        assertNull(table.getMessage("group.cards", cs));
+        assertNull(table.getMessage("group.unknown", cs));
+        assertFalse(table.contains("group.unknown"));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.karumien.cloud.sso.api.model.IdentityInfo;
+import com.karumien.cloud.sso.api.model.IntrospectionResponse;
+import com.karumien.cloud.sso.api.repository.RoleAttributeRepository;
+import com.karumien.cloud.sso.api.repository.RoleEntityRepository;
+import com.karumien.cloud.sso.internal.RoleGraph;
+
+/**
+ * Tests {@link AuthServiceImpl} with loaded role graph: roles of token are expanded in memory, binary rights of PIN login
+ * fall back to mask of effective roles.
+ */
+class AuthServiceTest {
+
+    private static final String ISSUER = "http://localhost:8080/auth/realms/test";
+
+    private final AuthServiceImpl service = new AuthServiceImpl();
+
+    private final RoleServiceImpl roleService = new RoleServiceImpl();
+
+    private final Keycloak keycloak = mock(Keycloak.class);
+
+    private final SearchService searchService = mock(SearchService.class);
+
+    private final RoleEntityRepository roleEntityRepository = mock(RoleEntityRepository.class);
+
+    private final RoleAttributeRepository roleAttributeRepository = mock(RoleAttributeRepository.class);
+
+    private final RealmKeyService realmKeyService = mock(RealmKeyService.class);
+
+    private final IdentityService identityService = mock(IdentityService.class);
+
+    private KeyPair keyPair;
+
+    private static RoleGraph.Role role(String name, String mask, String... composites) {
+        Map<String, List<String>> attributes = mask == null ? Collections.emptyMap()
+            : Collections.singletonMap(RoleService.ATTR_BINARY_MASK, Collections.singletonList(mask));
+        return new RoleGraph.Role(name, name, null, attributes, Arrays.asList(composites));
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        when(realmKeyService.getPublicKey("k1")).thenReturn(Optional.of(keyPair.getPublic()));
+
+        ReflectionTestUtils.setField(roleService, "keycloak", keycloak);
+        ReflectionTestUtils.setField(roleService, "searchService", searchService);
+        ReflectionTestUtils.setField(roleService, "roleEntityRepository", roleEntityRepository);
+        ReflectionTestUtils.setField(roleService, "roleAttributeRepository", roleAttributeRepository);
+        ReflectionTestUtils.setField(roleService, "roleGraph", new RoleGraph(Arrays.asList(
+            role("ADMIN", null, "USER", "ACCOUNT_W"), role("USER", null, "ACCOUNT_R"), role("ACCOUNT_R", "10"), role("ACCOUNT_W", "01"))));
+
+        ReflectionTestUtils.setField(service, "issuer", ISSUER);
+        ReflectionTestUtils.setField(service, "audience", "");
+        ReflectionTestUtils.setField(service, "keycloak", keycloak);
+        ReflectionTestUtils.setField(service, "searchService", searchService);
+        ReflectionTestUtils.setField(service, "realmKeyService", realmKeyService);
+        ReflectionTestUtils.setField(service, "roleService", roleService);
+        ReflectionTestUtils.setField(service, "identityService", identityService);
+        ReflectionTestUtils.setField(service, "clientId", "test");
+    }
+
+    @Test
+    void introspectExpandsRolesWithoutCalls() {
+
+        AccessToken token = new AccessToken();
+        token.issuer(ISSUER).subject("user-1").type("Bearer").issuedNow().exp(token.getIat() + 300L);
+        token.setRealmAccess(new AccessToken.Access().addRole("ADMIN").addRole("offline_access"));
+
+        IntrospectionResponse response = service.introspect(new JWSBuilder().kid("k1").jsonContent(token).rsa256(keyPair.getPrivate()), null);
+
+        assertTrue(response.isActive());
+        assertEquals("user-1", response.getSub());
+        assertEquals(Arrays.asList("ADMIN", "USER", "offline_access"), response.getRoles());
+        assertEquals(Arrays.asList("ACCOUNT_R", "ACCOUNT_W"), response.getRights());
+
+        verifyNoInteractions(keycloak, searchService, roleEntityRepository, roleAttributeRepository);
+    }
+
+    @Test
+    void loginByPinBinaryRights() {
+
+        ReflectionTestUtils.setField(roleService, "readMode", IdentityServiceImpl.READ_MODE_DATABASE);
+
+        UserRepresentation user = new UserRepresentation();
+        user.setId("user-1");
+        user.setAttributes(new HashMap<>());
+        user.getAttributes().put(IdentityService.ATTR_DRIVER_PIN, Collections.singletonList("1234"));
+        when(identityService.findIdentityByUsername("driver")).thenReturn(Optional.of(user));
+        when(identityService.mapping(user, false)).thenAnswer(i -> new IdentityInfo());
+        when(searchService.getSimpleAttribute(user.getAttributes(), IdentityService.ATTR_DRIVER_PIN)).thenReturn(Optional.of("1234"));
+        when(searchService.getSimpleAttribute(user.getAttributes(), IdentityService.ATTR_BINARY_RIGHTS)).thenReturn(Optional.empty());
+        when(searchService.findUserRealmRoles(anyCollection()))
+            .thenReturn(Collections.singletonMap("user-1", Collections.singleton("ADMIN")));
+
+        // mask of roles when identity has no explicit binary rights
+        assertEquals("11", service.loginByPin(null, "driver", "1234").getBinaryRights());
+
+        when(searchService.getSimpleAttribute(user.getAttributes(), IdentityService.ATTR_BINARY_RIGHTS)).thenReturn(Optional.of("0001"));
+        assertEquals("0001", service.loginByPin(null, "driver", "1234").getBinaryRights());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karumien.cloud.sso.api.entity.OnBoardingJobEntity;
+import com.karumien.cloud.sso.api.entity.OnBoardingJobItem;
+import com.karumien.cloud.sso.api.model.OnBoardingJobState;
+import com.karumien.cloud.sso.api.model.OnBoardingResult;
+import com.karumien.cloud.sso.api.model.OnBoardingStatus;
+import com.karumien.cloud.sso.api.repository.OnBoardingJobItemRepository;
+import com.karumien.cloud.sso.api.repository.OnBoardingJobRepository;
+
+/**
+ * Tests {@link OnBoardingJobServiceImpl} (chunked ingest and processing) with mocked repositories.
+ */
+class OnBoardingJobServiceTest {
+
+    private static final String RECORD = "{\"identity\":{\"contactNumber\":\"%s\"},\"credentials\":{\"password\":\"secret\"}}";
+
+    private final OnBoardingJobServiceImpl service = new OnBoardingJobServiceImpl();
+
+    private final OnBoardingJobRepository jobRepository = mock(OnBoardingJobRepository.class);
+
+    private final OnBoardingJobItemRepository itemRepository = mock(OnBoardingJobItemRepository.class);
+
+    private final OnBoardingService onBoardingService = mock(OnBoardingService.class);
+
+    /** Sizes of stored chunks (list is reused by service) */
+    private final List<Integer> chunks = new ArrayList<>();
+
+    private final List<OnBoardingJobItem> stored = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(i -> ((TransactionCallback<?>) i.getArgument(0)).doInTransaction(null));
+        when(jobRepository.claim(anyString(), anyString(), any(), any())).thenReturn(1);
+        when(jobRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        when(itemRepository.saveAll(any())).thenAnswer(i -> {
+            List<OnBoardingJobItem> items = i.getArgument(0);
+            chunks.add(items.size());
+            stored.addAll(items);
+            return items;
+        });
+
+        ReflectionTestUtils.setField(service, "jobRepository", jobRepository);
+        ReflectionTestUtils.setField(service, "itemRepository", itemRepository);
+        ReflectionTestUtils.setField(service, "onBoardingService", onBoardingService);
+        ReflectionTestUtils.setField(service, "mapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        ReflectionTestUtils.setField(service, "lease", 300000L);
+        ReflectionTestUtils.setField(service, "maxAttempts", 2);
+        ReflectionTestUtils.setField(service, "spoolDir", System.getProperty("java.io.tmpdir"));
+    }
+
+    @Test
+    void chunkedIngest() throws IOException {
+
+        OnBoardingJobEntity job = job(OnBoardingJobServiceImpl.STATE_UPLOADING);
+        String ndjson = String.join("\n", String.format(RECORD, "1"), "", "{broken", String.format(RECORD, "3"), String.format(RECORD, "4"));
+
+        job = service.ingest(job, new BufferedReader(new StringReader(ndjson)));
+
+        assertEquals(Arrays.asList(2, 2, 0), chunks);
+        assertEquals(4, job.getTotal());
+        assertEquals(1, job.getFailedCount());
+        assertEquals(OnBoardingJobState.QUEUED.toString(), job.getState());
+
+        OnBoardingJobItem invalid = stored.get(1);
+        assertEquals(1, invalid.getPosition());
+        assertEquals(OnBoardingJobItem.STATUS_ERROR, invalid.getStatus());
+        assertNull(invalid.getValue());
+        assertEquals(3, stored.get(3).getPosition());
+    }
+
+    @Test
+    void ingestResumesAfterStoredRecords() throws IOException {
+
+        OnBoardingJobEntity job = job(OnBoardingJobServiceImpl.STATE_UPLOADING);
+        job.setTotal(2);
+        String ndjson = String.join("\n", String.format(RECORD, "1"), String.format(RECORD, "2"), "", String.format(RECORD, "3"));
+
+        job = service.ingest(job, new BufferedReader(new StringReader(ndjson)));
+
+        assertEquals(3, job.getTotal());
+        assertEquals(1, stored.size());
+        assertEquals(2, stored.get(0).getPosition());
+    }
+
+    @Test
+    void itemErrors() {
+
+        OnBoardingJobEntity job = job(OnBoardingJobState.QUEUED.toString());
+        job.setTotal(3);
+        job.setFailedCount(1);
+        List<OnBoardingJobItem> items = Arrays.asList(item(job, 0, null), item(job, 1, OnBoardingJobItem.STATUS_ERROR), item(job, 2, null));
+        when(itemRepository.findNext(eq(job.getId()), anyLong(), any(Pageable.class))).thenReturn(items, Collections.emptyList());
+        when(onBoardingService.onboarding(anyList())).thenReturn(Arrays.asList(result(OnBoardingStatus.CREATED, null),
+            result(OnBoardingStatus.ERROR, "Identity 3 failed")));
+
+        service.process(job);
+
+        verify(itemRepository).deleteByPositions(job.getId(), Collections.singletonList(0L));
+        assertEquals(1, stored.size());
+        OnBoardingJobItem failed = stored.get(0);
+        assertEquals(2, failed.getPosition());
+        assertEquals(OnBoardingJobItem.STATUS_ERROR, failed.getStatus());
+        assertEquals("Identity 3 failed", failed.getMessage());
+        assertNull(failed.getValue());
+
+        assertEquals(1, job.getCreatedCount());
+        assertEquals(2, job.getFailedCount());
+        assertEquals(3, job.getCommittedOffset());
+        assertEquals(OnBoardingJobState.FINISHED.toString(), job.getState());
+    }
+
+    @Test
+    void failedAfterMaxAttempts() {
+
+        OnBoardingJobEntity job = job(OnBoardingJobState.QUEUED.toString());
+        job.setTotal(1);
+        when(jobRepository.findByStates(any())).thenReturn(Collections.singletonList(job));
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(itemRepository.findNext(eq(job.getId()), anyLong(), any(Pageable.class))).thenReturn(Collections.singletonList(item(job, 0, null)));
+        when(onBoardingService.onboarding(anyList())).thenThrow(new IllegalStateException("KeyCloak unavailable"));
+
+        service.processJobs();
+        assertEquals(1, job.getAttempts());
+        assertEquals(OnBoardingJobState.RUNNING.toString(), job.getState());
+        assertNull(job.getOwner());
+
+        service.processJobs();
+        assertEquals(2, job.getAttempts());
+        assertEquals(OnBoardingJobState.FAILED.toString(), job.getState());
+        assertEquals("KeyCloak unavailable", job.getMessage());
+        verify(itemRepository).deleteByJobId(job.getId());
+    }
+
+    private OnBoardingJobEntity job(String state) {
+        OnBoardingJobEntity job = new OnBoardingJobEntity();
+        job.setId("job");
+        job.setState(state);
+        return job;
+    }
+
+    private OnBoardingJobItem item(OnBoardingJobEntity job, long position, String status) {
+        OnBoardingJobItem item = new OnBoardingJobItem();
+        item.setJobId(job.getId());
+        item.setPosition(position);
+        item.setStatus(status);
+        item.setValue(status == null ? String.format(RECORD, position + 1) : null);
+        return item;
+    }
+
+    private OnBoardingResult result(OnBoardingStatus status, String message) {
+        OnBoardingResult result = new OnBoardingResult();
+        result.setStatus(status);
+        result.setMessage(message);
+        return result;
+    }
+}
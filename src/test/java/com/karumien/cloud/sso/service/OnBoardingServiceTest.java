@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.karumien.cloud.sso.api.entity.AccountEntity;
+import com.karumien.cloud.sso.api.model.AccountInfo;
+import com.karumien.cloud.sso.api.model.Credentials;
+import com.karumien.cloud.sso.api.model.IdentityInfo;
+import com.karumien.cloud.sso.api.model.OnBoardingInfo;
+import com.karumien.cloud.sso.api.model.OnBoardingResult;
+import com.karumien.cloud.sso.api.model.OnBoardingStatus;
+
+/**
+ * Tests {@link OnBoardingServiceImpl#onboarding(List)} (parallel pipeline grouped by account) and single item
+ * {@link OnBoardingServiceImpl#onboarding(OnBoardingInfo)} with mocked services.
+ */
+class OnBoardingServiceTest {
+
+    private final OnBoardingServiceImpl service = new OnBoardingServiceImpl();
+
+    private final AccountService accountService = mock(AccountService.class);
+
+    private final IdentityService identityService = mock(IdentityService.class);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    /** Contact numbers in order of creation */
+    private final List<String> created = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        when(accountService.findAccount("A")).thenReturn(Optional.empty());
+        when(accountService.findAccount("B")).thenReturn(Optional.of(new AccountEntity()));
+        when(identityService.findIdentity(anyString(), eq(true))).thenReturn(Optional.empty());
+        when(identityService.createIdentity(any())).thenAnswer(i -> {
+            IdentityInfo identity = i.getArgument(0);
+            created.add(identity.getContactNumber());
+            if ("3".equals(identity.getContactNumber())) {
+                throw new IllegalStateException("Identity 3 failed");
+            }
+            IdentityInfo identityInfo = new IdentityInfo();
+            identityInfo.setIdentityId("id-" + identity.getContactNumber());
+            return identityInfo;
+        });
+
+        ReflectionTestUtils.setField(service, "accountService", accountService);
+        ReflectionTestUtils.setField(service, "identityService", identityService);
+        ReflectionTestUtils.setField(service, "onboardingExecutor", executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void pipeline() {
+
+        List<OnBoardingResult> results = service.onboarding(Arrays.asList(
+            info("A", "1"), info("B", "2"), info("A", "3"), info("A", "4"), info(null, "5")));
+
+        assertEquals(5, results.size());
+        for (int index = 0; index < results.size(); index++) {
+            assertEquals(index, results.get(index).getIndex());
+            assertEquals(String.valueOf(index + 1), results.get(index).getContactNumber());
+        }
+
+        assertEquals(OnBoardingStatus.CREATED, results.get(0).getStatus());
+        assertEquals(OnBoardingStatus.CREATED, results.get(1).getStatus());
+        assertEquals(OnBoardingStatus.ERROR, results.get(2).getStatus());
+        assertEquals("Identity 3 failed", results.get(2).getMessage());
+        assertEquals(OnBoardingStatus.CREATED, results.get(3).getStatus());
+        assertEquals(OnBoardingStatus.CREATED, results.get(4).getStatus());
+        assertEquals("id-4", results.get(3).getIdentity().getIdentityId());
+        assertNull(results.get(4).getAccountNumber());
+
+        // items of one account keep order of request
+        List<String> accountA = new ArrayList<>(created);
+        accountA.retainAll(Arrays.asList("1", "3", "4"));
+        assertEquals(Arrays.asList("1", "3", "4"), accountA);
+
+        // account existence is checked once per account
+        verify(accountService, times(1)).findAccount("A");
+        verify(accountService, times(1)).findAccount("B");
+        verify(accountService, times(1)).createAccount(any());
+        verify(identityService, never()).updateIdentity(anyString(), any(), any());
+    }
+
+    @Test
+    void singleItemErrors() {
+
+        // failed identity is logged
+        assertNull(service.onboarding(info("A", "3")));
+
+        // failed credentials are thrown
+        OnBoardingInfo info = info("A", "6");
+        info.setCredentials(new Credentials());
+        doThrow(new IllegalStateException("Weak password")).when(identityService).createIdentityCredentials(eq("6"), any());
+        assertThrows(IllegalStateException.class, () -> service.onboarding(info));
+    }
+
+    private OnBoardingInfo info(String accountNumber, String contactNumber) {
+        OnBoardingInfo info = new OnBoardingInfo();
+        if (accountNumber != null) {
+            AccountInfo account = new AccountInfo();
+            account.setAccountNumber(accountNumber);
+            info.setAccount(account);
+        }
+        IdentityInfo identity = new IdentityInfo();
+        identity.setContactNumber(contactNumber);
+        info.setIdentity(identity);
+        return info;
+    }
+}
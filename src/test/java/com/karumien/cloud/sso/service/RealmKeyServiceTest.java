@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.MediaType;
+
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.jose.jwk.JSONWebKeySet;
+import org.keycloak.representations.idm.PublishedRealmRepresentation;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests {@link RealmKeyServiceImpl} reload of keys on unknown Key ID with mocked token endpoint client.
+ */
+class RealmKeyServiceTest {
+
+    private static final int THREADS = 8;
+
+    private final RealmKeyServiceImpl service = new RealmKeyServiceImpl();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    /** Count of loads of realm certificates */
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ResteasyClient tokenClient = mock(ResteasyClient.class, RETURNS_DEEP_STUBS);
+        PublishedRealmRepresentation realmInfo = new PublishedRealmRepresentation();
+        realmInfo.setPublicKeyPem("MIIB");
+        when(tokenClient.target(anyString()).request(MediaType.APPLICATION_JSON).get(PublishedRealmRepresentation.class)).thenReturn(realmInfo);
+        when(tokenClient.target(anyString()).request(MediaType.APPLICATION_JSON).get(JSONWebKeySet.class)).thenAnswer(i -> {
+            loads.incrementAndGet();
+            Thread.sleep(50);
+            return new JSONWebKeySet();
+        });
+
+        ReflectionTestUtils.setField(service, "realm", "test");
+        ReflectionTestUtils.setField(service, "adminServerUrl", "http://localhost:8080/auth");
+        ReflectionTestUtils.setField(service, "minRefreshInterval", 10000L);
+        ReflectionTestUtils.setField(service, "tokenClient", tokenClient);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentUnknownKeyReloadsOnce() throws Exception {
+
+        assertEquals("MIIB", service.getPublicKey());
+        assertEquals(1, loads.get());
+
+        // last reload is older than min refresh interval
+        ReflectionTestUtils.setField(service, "lastAttempt", 0L);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return service.getPublicKey("forged").isPresent();
+            }));
+        }
+        start.countDown();
+
+        for (Future<Boolean> result : results) {
+            assertFalse(result.get());
+        }
+        assertEquals(2, loads.get());
+    }
+}
@@ -13,6 +13,7 @@ import java.util.List;
 
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
@@ -39,5 +40,17 @@ class SearchServiceTest {
         assertEquals(2, usersIds.size());
         
     }
+
+    @Test
+    @Disabled
+    void findUserRepresentationsByIds() {
+
+        List<String> usersIds = searchService.findUserIdsByAttribute(IdentityPropertyType.ATTR_CONTACT_NUMBER, "11714");
+        List<UserRepresentation> users = searchService.findUserRepresentationsByIds(usersIds);
+        assertEquals(usersIds.size(), users.size());
+        assertEquals(usersIds.get(0), users.get(0).getId());
+        assertEquals("11714", searchService.getSimpleAttribute(users.get(0).getAttributes(), "contactNumber").get());
+
+    }
     
 }
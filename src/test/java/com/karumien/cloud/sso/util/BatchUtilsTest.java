@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import com.karumien.cloud.sso.internal.CallCounter;
+
+/**
+ * Tests {@link BatchUtils}.
+ */
+class BatchUtilsTest {
+
+    @Test
+    void partition() {
+        List<List<Integer>> chunks = BatchUtils.partition(Arrays.asList(1, 2, 3, 4, 5), 2);
+        assertEquals(3, chunks.size());
+        assertEquals(Arrays.asList(5), chunks.get(2));
+    }
+
+    @Test
+    void parallelMapKeepsOrder() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertEquals(Arrays.asList("1", "2", "3", "4"), BatchUtils.parallelMap(executor, Arrays.asList(1, 2, 3, 4), String::valueOf));
+            assertThrows(IllegalArgumentException.class, () -> BatchUtils.parallelMap(executor, Arrays.asList(1, 2), i -> {
+                throw new IllegalArgumentException();
+            }));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void parallelMapCountsCallsOfCaller() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CallCounter counter = CallCounter.start();
+        try {
+            BatchUtils.parallelMap(executor, Arrays.asList(1, 2, 3, 4), i -> {
+                CallCounter.count(CallCounter.Type.KEYCLOAK);
+                return i;
+            });
+            assertEquals(4, counter.get(CallCounter.Type.KEYCLOAK));
+            assertEquals(4, counter.getTotal());
+        } finally {
+            CallCounter.stop();
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2019-2029 Karumien s.r.o.
+ *
+ * Karumien s.r.o. is not responsible for defects arising from 
+ * unauthorized changes to the source code.
+ */
+package com.karumien.cloud.sso.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link StackTraceUtils}.
+ */
+class StackTraceUtilsTest {
+
+    @Test
+    void truncated() {
+        Exception e = new IllegalStateException("failed", new IllegalArgumentException("cause"));
+
+        String trace = StackTraceUtils.truncated(e, 100);
+        assertEquals(100, trace.length());
+        assertTrue(trace.startsWith("java.lang.IllegalStateException: failed" + System.lineSeparator() + "\tat "));
+
+        StringWriter printed = new StringWriter();
+        e.getCause().printStackTrace(new PrintWriter(printed));
+        assertEquals(printed.toString(), StackTraceUtils.truncated(e.getCause(), Integer.MAX_VALUE));
+        assertTrue(StackTraceUtils.truncated(e, Integer.MAX_VALUE).contains("Caused by: java.lang.IllegalArgumentException: cause"));
+    }
+}